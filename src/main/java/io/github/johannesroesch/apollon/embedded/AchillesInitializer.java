@@ -23,6 +23,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -40,21 +41,30 @@ public class AchillesInitializer {
 
     private CqlSession singletonSession;
 
-    void initializeFromParameters(TypedMap parameters) {
+    void initializeFromParameters(TypedMap parameters, StartupReport startupReport) {
         synchronized (STARTED) {
             final String keyspaceName = extractAndValidateKeyspaceName(parameters);
             final Boolean durableWrite = parameters.getTyped(KEYSPACE_DURABLE_WRITE);
 
             if (!STARTED.get()) {
                 LOGGER.debug("Creating cluster and session singletons");
+                final long sessionStart = System.nanoTime();
                 singletonSession = initializeSession();
-                createKeyspaceIfNeeded(singletonSession, keyspaceName, durableWrite);
-                executeStartupScripts(singletonSession, parameters);
+                startupReport.record(StartupReport.SESSION_CREATION, sessionStart);
+                if (parameters.getTypedOr(GOLDEN_IMAGE_RESTORED, false)) {
+                    LOGGER.debug("Keyspace and startup scripts already applied by the golden image");
+                    markStartupScriptsApplied(keyspaceName, parameters);
+                } else {
+                    createKeyspaceIfNeeded(singletonSession, keyspaceName, durableWrite);
+                    executeStartupScripts(singletonSession, keyspaceName, parameters, startupReport);
+                    loadBulkFixtures(keyspaceName, parameters, startupReport);
+                }
                 STARTED.getAndSet(true);
             } else {
                 LOGGER.debug("Cluster and session singletons already created");
                 createKeyspaceIfNeeded(singletonSession, keyspaceName, durableWrite);
-                executeStartupScripts(singletonSession, parameters);
+                executeStartupScripts(singletonSession, keyspaceName, parameters, startupReport);
+                loadBulkFixtures(keyspaceName, parameters, startupReport);
             }
         }
     }
@@ -71,6 +81,10 @@ public class AchillesInitializer {
 
     private String extractAndValidateKeyspaceName(TypedMap parameters) {
         String keyspaceName = parameters.getTyped(DEFAULT_KEYSPACE_NAME);
+        return validateKeyspaceName(keyspaceName);
+    }
+
+    static String validateKeyspaceName(String keyspaceName) {
         ValidationHelper.validateNotBlank(keyspaceName, "The provided keyspace name should not be blank");
         ValidationHelper.validateTrue(KEYSPACE_NAME_PATTERN.matcher(keyspaceName).matches(),
                 "The provided keyspace name '%s' should match the " + "following pattern : '%s'", keyspaceName,
@@ -78,10 +92,14 @@ public class AchillesInitializer {
         return keyspaceName;
     }
 
-    private void createKeyspaceIfNeeded(CqlSession session, String keyspaceName, Boolean keyspaceDurableWrite) {
+    static void createKeyspaceIfNeeded(CqlSession session, String keyspaceName, Boolean keyspaceDurableWrite) {
+        createKeyspaceIfNeeded(session, keyspaceName, keyspaceDurableWrite, 1);
+    }
+
+    static void createKeyspaceIfNeeded(CqlSession session, String keyspaceName, Boolean keyspaceDurableWrite, int replicationFactor) {
         final Map<String, Object> replicationOptions = new HashMap<>();
         replicationOptions.put("class", "SimpleStrategy");
-        replicationOptions.put("replication_factor", 1);
+        replicationOptions.put("replication_factor", replicationFactor);
 
         final SimpleStatement statement = SchemaBuilder.createKeyspace(keyspaceName).ifNotExists().withReplicationOptions(replicationOptions).withDurableWrites(keyspaceDurableWrite).build();
 
@@ -90,24 +108,86 @@ public class AchillesInitializer {
         session.execute(statement);
     }
 
-    private void executeStartupScripts(CqlSession session, TypedMap parameters) {
+    private void executeStartupScripts(CqlSession session, String keyspaceName, TypedMap parameters, StartupReport startupReport) {
+        if (parameters.<Integer>getTyped(KEYSPACE_POOL_SIZE) > 0) {
+            LOGGER.debug("Startup scripts are executed into the keyspaces of the pool");
+            return;
+        }
+        final boolean cacheScripts = parameters.getTyped(CACHE_STARTUP_SCRIPTS);
         ScriptExecutor scriptExecutor = null;
         List<String> scriptLocations = parameters.getTypedOr(SCRIPT_LOCATIONS, new ArrayList<>());
         if (!scriptLocations.isEmpty()) {
-            scriptExecutor = new ScriptExecutor(session);
-            scriptLocations.forEach(scriptExecutor::executeScript);
+            scriptExecutor = newScriptExecutor(session, parameters);
+            final ScriptExecutor executor = scriptExecutor;
+            scriptLocations.forEach(location -> executeStartupScript(keyspaceName, location, new HashMap<>(), cacheScripts,
+                    () -> startupReport.time(StartupReport.SCRIPT_PREFIX + location, () -> executor.executeScript(location))));
         }
 
         final Map<String, Map<String, Object>> scriptTemplates = parameters.getTypedOr(SCRIPT_TEMPLATES, new HashMap<>());
         if (!scriptTemplates.isEmpty()) {
             scriptExecutor = scriptExecutor == null
-                    ? new ScriptExecutor(session)
+                    ? newScriptExecutor(session, parameters)
                     : scriptExecutor;
 
             final ScriptExecutor executor = scriptExecutor;
 
-            scriptTemplates.forEach(executor::executeScriptTemplate);
+            scriptTemplates.forEach((location, values) -> executeStartupScript(keyspaceName, location, values, cacheScripts,
+                    () -> startupReport.time(StartupReport.SCRIPT_PREFIX + location, () -> executor.executeScriptTemplate(location, values))));
+        }
+    }
+
+    private void executeStartupScript(String keyspaceName, String location, Map<String, Object> values, boolean cacheScripts, Runnable execution) {
+        if (!cacheScripts) {
+            execution.run();
+        } else if (ParsedScriptCache.isApplied(keyspaceName, location, values)) {
+            LOGGER.debug("Script {} already applied to keyspace {}", location, keyspaceName);
+        } else {
+            execution.run();
+            ParsedScriptCache.markApplied(keyspaceName, location, values);
+        }
+    }
+
+    private void loadBulkFixtures(String keyspaceName, TypedMap parameters, StartupReport startupReport) {
+        final Map<String, String> bulkFixtures = parameters.getTypedOr(BULK_FIXTURES, new HashMap<>());
+        if (!bulkFixtures.isEmpty()) {
+            final boolean cacheScripts = parameters.getTyped(CACHE_STARTUP_SCRIPTS);
+            final BulkFixtureLoader loader = new BulkFixtureLoader(keyspaceName);
+            bulkFixtures.forEach((table, location) -> executeStartupScript(keyspaceName, location, fixtureTarget(table), cacheScripts,
+                    () -> startupReport.time(StartupReport.FIXTURE_PREFIX + table, () -> loader.load(table, location))));
+        }
+    }
+
+    private void markStartupScriptsApplied(String keyspaceName, TypedMap parameters) {
+        if (parameters.getTyped(CACHE_STARTUP_SCRIPTS)) {
+            final List<String> scriptLocations = parameters.getTypedOr(SCRIPT_LOCATIONS, new ArrayList<>());
+            scriptLocations.forEach(location -> ParsedScriptCache.markApplied(keyspaceName, location, new HashMap<>()));
+            final Map<String, Map<String, Object>> scriptTemplates = parameters.getTypedOr(SCRIPT_TEMPLATES, new HashMap<>());
+            scriptTemplates.forEach((location, values) -> ParsedScriptCache.markApplied(keyspaceName, location, values));
+            final Map<String, String> bulkFixtures = parameters.getTypedOr(BULK_FIXTURES, new HashMap<>());
+            bulkFixtures.forEach((table, location) -> ParsedScriptCache.markApplied(keyspaceName, location, fixtureTarget(table)));
+        }
+    }
+
+    /**
+     * The same fixture may be loaded into several tables, the target table is part of the applied fixture key
+     */
+    private static Map<String, Object> fixtureTarget(String table) {
+        return Collections.singletonMap("table", table);
+    }
+
+    static ScriptExecutor newScriptExecutor(CqlSession session, TypedMap parameters) {
+        final ScriptExecutor scriptExecutor = new ScriptExecutor(session, parameters.getTyped(SCRIPT_EXECUTION_CONCURRENCY),
+                parameters.getTyped(PREPARE_REPEATED_SCRIPT_INSERTS))
+                .cacheParsedScripts(parameters.getTyped(CACHE_STARTUP_SCRIPTS));
+        final boolean bulkApplySchema = parameters.getTyped(BULK_APPLY_SCHEMA);
+        if (bulkApplySchema || parameters.<Boolean>getTyped(IN_PROCESS_SCRIPT_EXECUTION)) {
+            if (InProcessStatementExecutor.isAvailable()) {
+                scriptExecutor.executeInProcess(true).bulkApplySchema(bulkApplySchema);
+            } else {
+                LOGGER.warn("No embedded Cassandra server started in this JVM, executing the startup scripts through the driver");
+            }
         }
+        return scriptExecutor;
     }
 
     public CqlSession getSingletonSession() {
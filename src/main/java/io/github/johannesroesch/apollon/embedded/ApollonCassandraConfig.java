@@ -21,8 +21,10 @@ import org.apache.cassandra.config.ConfigurationLoader;
 import org.apache.cassandra.config.EncryptionOptions;
 import org.apache.cassandra.config.ParameterizedClass;
 
+import java.lang.reflect.Field;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Properties;
 
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
@@ -36,6 +38,10 @@ public class ApollonCassandraConfig implements ConfigurationLoader {
     static final String ACHILLES_EMBEDDED_CASSANDRA_BROADCAST_ADDRESS = "ACHILLES_EMBEDDED_CASSANDRA_BROADCAST_ADDRESS";
     static final String ACHILLES_EMBEDDED_CASSANDRA_RPC_ADDRESS = "ACHILLES_EMBEDDED_CASSANDRA_RPC_ADDRESS";
     static final String ACHILLES_EMBEDDED_CASSANDRA_BROADCAST_RPC_ADDRESS = "ACHILLES_EMBEDDED_CASSANDRA_BROADCAST_RPC_ADDRESS";
+    static final String ACHILLES_EMBEDDED_CASSANDRA_SEEDS = "ACHILLES_EMBEDDED_CASSANDRA_SEEDS";
+    static final String ACHILLES_EMBEDDED_CASSANDRA_ENDPOINT_SNITCH = "ACHILLES_EMBEDDED_CASSANDRA_ENDPOINT_SNITCH";
+    static final String ACHILLES_EMBEDDED_CASSANDRA_CONFIG_PROFILE = "ACHILLES_EMBEDDED_CASSANDRA_CONFIG_PROFILE";
+    static final String ACHILLES_EMBEDDED_CASSANDRA_CONFIG_OVERRIDE_PREFIX = "ACHILLES_EMBEDDED_CASSANDRA_CONFIG.";
 
 
     static final String ACHILLES_EMBEDDED_CASSANDRA_DATA_FOLDER = "ACHILLES_EMBEDDED_CASSANDRA_DATA_FOLDER";
@@ -44,6 +50,9 @@ public class ApollonCassandraConfig implements ConfigurationLoader {
     static final String ACHILLES_EMBEDDED_CASSANDRA_HINTS_FOLDER = "ACHILLES_EMBEDDED_CASSANDRA_HINTS_FOLDER";
     static final String ACHILLES_EMBEDDED_CASSANDRA_CDC_RAW_FOLDER = "ACHILLES_EMBEDDED_CASSANDRA_CDC_RAW_FOLDER";
 
+    private static volatile Runnable loadListener = () -> {
+    };
+
     @Override
     public Config loadConfig() {
         final Config config = new Config();
@@ -98,7 +107,7 @@ public class ApollonCassandraConfig implements ConfigurationLoader {
         config.truncate_request_timeout_in_ms = 60000L;
         config.request_timeout_in_ms = 10000L;
         config.cross_node_timeout = false;
-        config.endpoint_snitch = "SimpleSnitch";
+        config.endpoint_snitch = System.getProperty(ACHILLES_EMBEDDED_CASSANDRA_ENDPOINT_SNITCH, "SimpleSnitch");
         config.dynamic_snitch_update_interval_in_ms = 100;
         config.dynamic_snitch_reset_interval_in_ms = 600000;
         config.dynamic_snitch_badness_threshold = 0.1;
@@ -120,7 +129,14 @@ public class ApollonCassandraConfig implements ConfigurationLoader {
         config.disk_failure_policy = Config.DiskFailurePolicy.stop_paranoid;
 
         final Map<String, String> seedsMap = new HashMap<>();
-        seedsMap.put("seeds", config.listen_address);
+        final String seeds = System.getProperty(ACHILLES_EMBEDDED_CASSANDRA_SEEDS);
+        if (isNotBlank(seeds)) {
+            seedsMap.put("seeds", seeds);
+            // Nodes of a local cluster start together from empty data folders, there is nothing to stream
+            config.auto_bootstrap = false;
+        } else {
+            seedsMap.put("seeds", config.listen_address);
+        }
         config.seed_provider = new ParameterizedClass("org.apache.cassandra.locator.SimpleSeedProvider", seedsMap);
 
         config.data_file_directories = new String[]{System.getProperty(ACHILLES_EMBEDDED_CASSANDRA_DATA_FOLDER)};
@@ -128,6 +144,68 @@ public class ApollonCassandraConfig implements ConfigurationLoader {
         config.saved_caches_directory = System.getProperty(ACHILLES_EMBEDDED_CASSANDRA_SAVED_CACHES_FOLDER);
         config.hints_directory = System.getProperty(ACHILLES_EMBEDDED_CASSANDRA_HINTS_FOLDER);
         config.cdc_raw_directory = System.getProperty(ACHILLES_EMBEDDED_CASSANDRA_CDC_RAW_FOLDER);
+
+        final String profile = System.getProperty(ACHILLES_EMBEDDED_CASSANDRA_CONFIG_PROFILE);
+        if (isNotBlank(profile))
+            ConfigProfile.valueOf(profile).apply(config);
+
+        applyOverrides(config, System.getProperties());
+        loadListener.run();
         return config;
     }
+
+    /**
+     * @param listener called each time the configuration is loaded, e.g. by the nodes of an {@link InJvmCluster}
+     *                 which are configured one after the other through the system properties
+     */
+    static void setLoadListener(Runnable listener) {
+        loadListener = listener;
+    }
+
+    /**
+     * Apply the <em>ACHILLES_EMBEDDED_CASSANDRA_CONFIG.&lt;setting&gt;</em> properties to the settings of the configuration
+     */
+    static void applyOverrides(Config config, Properties properties) {
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(ACHILLES_EMBEDDED_CASSANDRA_CONFIG_OVERRIDE_PREFIX)) {
+                applyOverride(config, name.substring(ACHILLES_EMBEDDED_CASSANDRA_CONFIG_OVERRIDE_PREFIX.length()), properties.getProperty(name));
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void applyOverride(Config config, String setting, String value) {
+        final Field field;
+        try {
+            field = Config.class.getField(setting);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalArgumentException(String.format("Unknown Cassandra setting '%s'", setting), e);
+        }
+        final Class<?> type = field.getType();
+        final Object typedValue;
+        if ("null".equals(value) && !type.isPrimitive()) {
+            typedValue = null;
+        } else if (type == int.class || type == Integer.class) {
+            typedValue = Integer.valueOf(value);
+        } else if (type == long.class || type == Long.class) {
+            typedValue = Long.valueOf(value);
+        } else if (type == double.class || type == Double.class) {
+            typedValue = Double.valueOf(value);
+        } else if (type == float.class || type == Float.class) {
+            typedValue = Float.valueOf(value);
+        } else if (type == boolean.class || type == Boolean.class) {
+            typedValue = Boolean.valueOf(value);
+        } else if (type == String.class) {
+            typedValue = value;
+        } else if (type.isEnum()) {
+            typedValue = Enum.valueOf((Class<Enum>) type, value);
+        } else {
+            throw new IllegalArgumentException(String.format("Cassandra setting '%s' of type %s cannot be overridden", setting, type.getSimpleName()));
+        }
+        try {
+            field.set(config, typedValue);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(String.format("Cannot override Cassandra setting '%s'", setting), e);
+        }
+    }
 }
@@ -18,6 +18,7 @@ package io.github.johannesroesch.apollon.embedded;
 
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import io.github.johannesroesch.apollon.exception.ApollonException;
 import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.Keyspace;
 import org.apache.cassandra.db.SystemKeyspace;
@@ -44,14 +45,33 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 
 public class ApollonCassandraDaemon extends CassandraDaemon {
 
     private static final Logger logger = LoggerFactory.getLogger(ApollonCassandraDaemon.class);
     private static final String EXCEPTION_IN_THREAD_MESSAGE = "Exception in thread {}";
+    private final StartupReport startupReport;
+    private final boolean freshDataDirectories;
     private NativeTransportService nativeTransportService;
 
+    public ApollonCassandraDaemon() {
+        this(new StartupReport(), false);
+    }
+
+    /**
+     * @param startupReport        report recording the duration of each setup phase
+     * @param freshDataDirectories whether the data, commit log and saved caches folders are empty. In this case
+     *                             there is nothing to scrub, no saved cache to load and no commit log to replay
+     */
+    public ApollonCassandraDaemon(StartupReport startupReport, boolean freshDataDirectories) {
+        // Managed: startup failures are thrown by activate() instead of exiting the JVM
+        super(true);
+        this.startupReport = startupReport;
+        this.freshDataDirectories = freshDataDirectories;
+    }
+
     /**
      * Override the default setup process to speed up bootstrap
      * <p>
@@ -67,6 +87,7 @@ public class ApollonCassandraDaemon extends CassandraDaemon {
      * - disable startup checks (Jemalloc, validLaunchDate, JMXPorts, JvmOptions, JnaInitialization, initSigarLibrary, dataDirs, SSTablesFormat, SystemKeyspaceState, Datacenter, Rack)
      * - disable materialized view rebuild (you should clean data folder between each test anyway)
      * - disable the SizeEstimatesRecorder (estimate SSTable size, who cares for unit testing ?)
+     * - skip data directories scrubbing, key/row cache loading and commit log replay on fresh data directories
      */
     @Override
     protected void setup() {
@@ -97,14 +118,26 @@ public class ApollonCassandraDaemon extends CassandraDaemon {
             }
         });
 
+        // Cassandra 4.0 no longer starts the commit log when the class is loaded, replayed or not
+        CommitLog.instance.start();
+
+        // The drivers read the listen and native ports of the node from system.local
+        SystemKeyspace.persistLocalMetadata();
+
         // Populate token metadata before flushing, for token-aware sstable partitioning (#6696)
         StorageService.instance.populateTokenMetadata();
 
         // load schema from disk
-        Schema.instance.loadFromDisk();
+        startupReport.time(StartupReport.LOAD_SCHEMA, Schema.instance::loadFromDisk);
+
+        setupVirtualKeyspaces();
+
+        if (freshDataDirectories)
+            logger.info("Fresh data directories, skipping scrubbing, saved caches loading and commit log replay");
 
         // clean up debris in the rest of the keyspaces
-        for (String keyspaceName : Schema.instance.getKeyspaces()) {
+        final long scrubStart = System.nanoTime();
+        for (String keyspaceName : freshDataDirectories ? Collections.<String>emptySet() : Schema.instance.getKeyspaces()) {
             // Skip system as we've already cleaned it
             if (keyspaceName.equals(SchemaConstants.SYSTEM_KEYSPACE_NAME))
                 continue;
@@ -113,10 +146,11 @@ public class ApollonCassandraDaemon extends CassandraDaemon {
                 try {
                     ColumnFamilyStore.scrubDataDirectories(cfm);
                 } catch (StartupException e) {
-                    exitOrFail(e.returnCode, e.getMessage(), e.getCause());
+                    failStartup(e.returnCode, e.getMessage(), e.getCause());
                 }
             }
         }
+        startupReport.record(StartupReport.SCRUB_DATA_DIRECTORIES, scrubStart);
 
         Keyspace.setInitialized();
 
@@ -133,18 +167,25 @@ public class ApollonCassandraDaemon extends CassandraDaemon {
         }
 
 
-        try {
-            loadRowAndKeyCacheAsync().get();
-        } catch (Throwable t) {
-            JVMStabilityInspector.inspectThrowable(t);
-            logger.warn("Error loading key or row cache", t);
-        }
-
-        // replay the log if necessary
-        try {
-            CommitLog.instance.recoverSegmentsOnDisk();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        if (!freshDataDirectories) {
+            final long cacheStart = System.nanoTime();
+            try {
+                loadRowAndKeyCacheAsync().get();
+            } catch (Throwable t) {
+                JVMStabilityInspector.inspectThrowable(t);
+                logger.warn("Error loading key or row cache", t);
+            }
+            startupReport.record(StartupReport.LOAD_CACHES, cacheStart);
+
+            // replay the log if necessary
+            final long commitLogStart = System.nanoTime();
+            try {
+                CommitLog.instance.recoverSegmentsOnDisk();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                startupReport.record(StartupReport.COMMIT_LOG_RECOVERY, commitLogStart);
+            }
         }
 
         // Re-populate token metadata after commit log recover (new peers might be loaded onto system keyspace #10293)
@@ -164,11 +205,14 @@ public class ApollonCassandraDaemon extends CassandraDaemon {
 
         // start server internals
         StorageService.instance.registerDaemon(this);
+        final long initServerStart = System.nanoTime();
         try {
             StorageService.instance.initServer();
         } catch (ConfigurationException e) {
             logger.error("Fatal configuration error; unable to start server.  See log for stacktrace./n {}", e.getMessage(), e);
-            exitOrFail(1, "Fatal configuration error", e);
+            failStartup(1, "Fatal configuration error", e);
+        } finally {
+            startupReport.record(StartupReport.INIT_SERVER, initServerStart);
         }
 
         // Native transport
@@ -177,9 +221,9 @@ public class ApollonCassandraDaemon extends CassandraDaemon {
         completeSetup();
     }
 
-    private void exitOrFail(int code, String message, Throwable cause) {
+    private void failStartup(int code, String message, Throwable cause) {
         logger.error(message, cause);
-        System.exit(code);
+        throw new ApollonException(String.format("%s (exit code %s)", message, code), cause);
     }
 
     private ListenableFuture<?> loadRowAndKeyCacheAsync() {
@@ -200,7 +244,7 @@ public class ApollonCassandraDaemon extends CassandraDaemon {
      */
     @Override
     public void start() {
-        startNativeTransport();
+        startupReport.time(StartupReport.NATIVE_TRANSPORT_START, this::startNativeTransport);
         StorageService.instance.setRpcReady(true);
     }
 
@@ -0,0 +1,358 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.github.johannesroesch.apollon.exception.ApollonException;
+import org.apache.cassandra.cql3.ColumnIdentifier;
+import org.apache.cassandra.cql3.Json;
+import org.apache.cassandra.cql3.QueryOptions;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.io.sstable.CQLSSTableWriter;
+import org.apache.cassandra.schema.ColumnMetadata;
+import org.apache.cassandra.schema.Schema;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Load CSV or JSON fixtures into a table of the running embedded server by writing SSTables
+ * directly with {@link CQLSSTableWriter} and importing them into the table, bypassing the native protocol.
+ * <br/>
+ * The table must already exist, e.g. created by the startup scripts. Supported formats, by file extension:
+ * <ul>
+ *     <li><strong>.csv</strong>: a header line with the column names, then one row per line.
+ *     Values use the Cassandra string representation, collections and UDTs use their JSON representation.
+ *     An empty cell is null, a quoted empty cell <em>""</em> is the empty value of the column type, e.g. an empty text</li>
+ *     <li><strong>.json</strong>: an array of JSON objects, or one JSON object per line, as accepted by <em>INSERT ... JSON</em></li>
+ * </ul>
+ * Both formats are read row by row while the SSTables are written, the fixture is never loaded whole in memory.
+ * The columns missing from the CSV header or from a JSON object are left unset.
+ */
+class BulkFixtureLoader {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkFixtureLoader.class);
+
+    private final String defaultKeyspaceName;
+
+    BulkFixtureLoader(String defaultKeyspaceName) {
+        this.defaultKeyspaceName = defaultKeyspaceName;
+    }
+
+    /**
+     * @param table          table name, optionally qualified by its keyspace (default keyspace otherwise)
+     * @param fixtureLocation location of the CSV or JSON fixture in the class path
+     * @return the number of loaded rows
+     */
+    long load(String table, String fixtureLocation) {
+        final TableMetadata metadata = lookupTable(table);
+        final long start = System.nanoTime();
+
+        final File folder;
+        try {
+            folder = Files.createTempDirectory("apollon-bulk-fixture").toFile();
+        } catch (IOException e) {
+            throw new ApollonException("Cannot create a folder for the SSTables of the fixture " + fixtureLocation, e);
+        }
+        try {
+            // The SSTables descriptors are resolved from the <keyspace>/<table> folder structure
+            final File tableFolder = new File(new File(folder, metadata.keyspace), metadata.name);
+            FileUtils.forceMkdir(tableFolder);
+
+            final long rows = writeSSTables(metadata, fixtureLocation, tableFolder);
+            importSSTables(metadata, tableFolder, BulkFixtureLoader::importNewSSTables);
+
+            final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            LOGGER.info("Loaded {} rows of fixture {} into {} in {} ms ({} rows/s)", rows, fixtureLocation, metadata,
+                    elapsedMillis, elapsedMillis > 0 ? rows * 1000 / elapsedMillis : rows);
+            return rows;
+        } catch (IOException e) {
+            throw new ApollonException(String.format("Cannot load fixture %s into %s", fixtureLocation, metadata), e);
+        } finally {
+            FileUtils.deleteQuietly(folder);
+        }
+    }
+
+    private TableMetadata lookupTable(String table) {
+        final String[] names = table.split("\\.", 2);
+        final String keyspaceName = names.length == 2 ? names[0] : defaultKeyspaceName;
+        final String tableName = names.length == 2 ? names[1] : names[0];
+        final TableMetadata metadata = Schema.instance.getTableMetadata(keyspaceName, tableName);
+        ValidationHelper.validateNotNull(metadata, "Cannot find table %s.%s to load the fixture into, it should be created by the startup scripts",
+                keyspaceName, tableName);
+        return metadata;
+    }
+
+    private long writeSSTables(TableMetadata metadata, String fixtureLocation, File tableFolder) throws IOException {
+        final List<ColumnMetadata> columns = new ArrayList<>();
+        metadata.allColumnsInSelectOrder().forEachRemaining(columns::add);
+
+        final String insert = String.format("INSERT INTO %s.%s (%s) VALUES (%s)",
+                ColumnIdentifier.maybeQuote(metadata.keyspace), ColumnIdentifier.maybeQuote(metadata.name),
+                columns.stream().map(column -> column.name.toCQLString()).collect(Collectors.joining(", ")),
+                columns.stream().map(column -> "?").collect(Collectors.joining(", ")));
+
+        long rows = 0;
+        try (BufferedReader reader = openFixture(fixtureLocation);
+             CQLSSTableWriter writer = CQLSSTableWriter.builder()
+                     .inDirectory(tableFolder)
+                     .forTable(metadata.toCqlString(false, false))
+                     .using(insert)
+                     .build()) {
+            final Iterator<Map<ColumnMetadata, ByteBuffer>> rowIterator = fixtureLocation.toLowerCase(Locale.ROOT).endsWith(".csv")
+                    ? new CsvRows(reader, metadata)
+                    : new JsonRows(reader, metadata);
+            while (rowIterator.hasNext()) {
+                final Map<ColumnMetadata, ByteBuffer> row = rowIterator.next();
+                final List<ByteBuffer> values = new ArrayList<>(columns.size());
+                for (ColumnMetadata column : columns) {
+                    values.add(row.getOrDefault(column, CQLSSTableWriter.UNSET_VALUE));
+                }
+                writer.rawAddRow(values);
+                rows++;
+            }
+        } catch (RuntimeException e) {
+            throw new ApollonException(String.format("Cannot write row %s of fixture %s: %s", rows + 1, fixtureLocation, e.getMessage()), e);
+        }
+        return rows;
+    }
+
+    /**
+     * @param importer imports the SSTables of the folder into the table, returning the folders which failed
+     */
+    static void importSSTables(TableMetadata metadata, File tableFolder, BiFunction<TableMetadata, File, List<String>> importer) {
+        final List<String> failedFolders;
+        try {
+            failedFolders = importer.apply(metadata, tableFolder);
+        } catch (RuntimeException e) {
+            throw new ApollonException(String.format("Cannot import the SSTables of %s from %s: %s", metadata, tableFolder, e.getMessage()), e);
+        }
+        ValidationHelper.validateTrue(failedFolders.isEmpty(), "Cannot import the SSTables of %s from %s", metadata, failedFolders);
+    }
+
+    private static List<String> importNewSSTables(TableMetadata metadata, File tableFolder) {
+        final ColumnFamilyStore store = Schema.instance.getColumnFamilyStoreInstance(metadata.id);
+        return store.importNewSSTables(Collections.singleton(tableFolder.getAbsolutePath()),
+                true, true, false, false, true, false);
+    }
+
+    private BufferedReader openFixture(String fixtureLocation) {
+        final InputStream inputStream = this.getClass().getResourceAsStream("/" + fixtureLocation);
+        ValidationHelper.validateNotNull(inputStream, "Cannot find fixture file at location '%s'", fixtureLocation);
+        return new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Split a CSV line on commas, supporting double-quoted values with "" as escaped quote.
+     * Unquoted values are trimmed, quoted values are kept as is and the spaces around their quotes are ignored
+     *
+     * @return the values of the line, null for the empty cells which are not quoted
+     */
+    static List<String> splitCsvLine(String line) {
+        final List<String> values = new ArrayList<>();
+        final StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"' && !wasQuoted && isBlank(value)) {
+                value.setLength(0);
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == ',') {
+                values.add(csvValue(value, wasQuoted));
+                value.setLength(0);
+                wasQuoted = false;
+            } else if (!wasQuoted || !Character.isWhitespace(c)) {
+                value.append(c);
+            }
+        }
+        values.add(csvValue(value, wasQuoted));
+        return values;
+    }
+
+    private static String csvValue(StringBuilder value, boolean quoted) {
+        if (quoted) {
+            return value.toString();
+        }
+        final String trimmed = value.toString().trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    /**
+     * @param value value of a CSV cell, null for an empty cell
+     * @return the serialized value of the column, null for an empty cell
+     */
+    static ByteBuffer fromCsvValue(ColumnMetadata column, String value) {
+        if (value == null) {
+            return null;
+        }
+        if (!value.isEmpty() && (column.type.isCollection() || column.type.isUDT() || column.type.isTuple())) {
+            return fromJsonValue(column, Json.decodeJson(value));
+        }
+        return column.type.fromString(value);
+    }
+
+    /**
+     * @param value decoded JSON value, as accepted by <em>INSERT ... JSON</em>
+     * @return the serialized value of the column
+     */
+    static ByteBuffer fromJsonValue(ColumnMetadata column, Object value) {
+        return value == null ? null : column.type.fromJSONObject(value).bindAndGet(QueryOptions.DEFAULT);
+    }
+
+    private static ColumnMetadata getColumn(TableMetadata metadata, String name) {
+        final ColumnMetadata column = metadata.getColumn(new ColumnIdentifier(name, true));
+        ValidationHelper.validateNotNull(column, "Unknown column %s in table %s", name, metadata);
+        return column;
+    }
+
+    /**
+     * Rows of a CSV fixture, parsed lazily line by line
+     */
+    private static final class CsvRows implements Iterator<Map<ColumnMetadata, ByteBuffer>> {
+        private final BufferedReader reader;
+        private final List<ColumnMetadata> header;
+        private String nextLine;
+
+        private CsvRows(BufferedReader reader, TableMetadata metadata) throws IOException {
+            this.reader = reader;
+            final String headerLine = reader.readLine();
+            ValidationHelper.validateNotNull(headerLine, "The CSV fixture should start with a header line");
+            this.header = splitCsvLine(headerLine).stream()
+                    .map(name -> {
+                        // Column names are case insensitive unless they only exist with the exact case
+                        final ColumnMetadata column = metadata.getColumn(new ColumnIdentifier(name, true));
+                        return column != null ? column : getColumn(metadata, name.toLowerCase(Locale.ROOT));
+                    })
+                    .collect(Collectors.toList());
+            advance();
+        }
+
+        private void advance() {
+            try {
+                do {
+                    nextLine = reader.readLine();
+                } while (nextLine != null && nextLine.trim().isEmpty());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextLine != null;
+        }
+
+        @Override
+        public Map<ColumnMetadata, ByteBuffer> next() {
+            if (nextLine == null) {
+                throw new NoSuchElementException();
+            }
+            final List<String> values = splitCsvLine(nextLine);
+            ValidationHelper.validateTrue(values.size() == header.size(), "Expected %s values but found %s in line '%s'",
+                    header.size(), values.size(), nextLine);
+            final Map<ColumnMetadata, ByteBuffer> row = new HashMap<>();
+            for (int i = 0; i < values.size(); i++) {
+                final ColumnMetadata column = header.get(i);
+                row.put(column, fromCsvValue(column, values.get(i)));
+            }
+            advance();
+            return row;
+        }
+    }
+
+    /**
+     * Rows of a JSON fixture, an array of objects or a sequence of objects, parsed lazily object by object
+     */
+    static final class JsonRows implements Iterator<Map<ColumnMetadata, ByteBuffer>> {
+        private final JsonParser parser;
+        private final TableMetadata metadata;
+        private final boolean array;
+        private JsonToken nextToken;
+
+        JsonRows(Reader reader, TableMetadata metadata) throws IOException {
+            this.parser = Json.JSON_OBJECT_MAPPER.getFactory().createParser(reader);
+            this.metadata = metadata;
+            this.nextToken = parser.nextToken();
+            this.array = nextToken == JsonToken.START_ARRAY;
+            if (array) {
+                advance();
+            }
+        }
+
+        private void advance() {
+            try {
+                nextToken = parser.nextToken();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (array && nextToken == JsonToken.END_ARRAY) {
+                nextToken = null;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextToken != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map<ColumnMetadata, ByteBuffer> next() {
+            if (nextToken == null) {
+                throw new NoSuchElementException();
+            }
+            ValidationHelper.validateTrue(nextToken == JsonToken.START_OBJECT, "Expected a JSON object but found %s", nextToken);
+            final Map<String, Object> values;
+            try {
+                values = new HashMap<>(Json.JSON_OBJECT_MAPPER.readValue(parser, Map.class));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            Json.handleCaseSensitivity(values);
+            final Map<ColumnMetadata, ByteBuffer> row = new HashMap<>();
+            values.forEach((name, value) -> {
+                final ColumnMetadata column = getColumn(metadata, name);
+                row.put(column, fromJsonValue(column, value));
+            });
+            advance();
+            return row;
+        }
+    }
+}
@@ -52,10 +52,33 @@ public class CassandraEmbeddedConfigParameters {
     public static final String CASSANDRA_JMX_PORT = "jmxPort";
     public static final String CASSANDRA_CONCURRENT_READS = "concurrentReads";
     public static final String CASSANDRA_CONCURRENT_WRITES = "concurrentWrites";
+    public static final String SEEDS = "seeds";
+    public static final String ENDPOINT_SNITCH = "endpointSnitch";
     public static final String DEFAULT_KEYSPACE_NAME = "defaultKeyspaceName";
     public static final String KEYSPACE_DURABLE_WRITE = "keyspaceDurableWrite";
     public static final String SCRIPT_LOCATIONS = "scriptLocations";
     public static final String SCRIPT_TEMPLATES = "scriptTemplates";
+    public static final String BULK_FIXTURES = "bulkFixtures";
+    public static final String STARTUP_TIMEOUT_IN_MILLIS = "startupTimeoutInMillis";
+    public static final String FAST_BOOTSTRAP_ON_FRESH_DATA = "fastBootstrapOnFreshData";
+    public static final String TRACK_DIRTY_TABLES = "trackDirtyTables";
+    public static final String KEYSPACE_POOL_SIZE = "keyspacePoolSize";
+    public static final String USE_GOLDEN_IMAGE = "useGoldenImage";
+    public static final String GOLDEN_IMAGE_FOLDER = "goldenImageFolder";
+    public static final String SCRIPT_EXECUTION_CONCURRENCY = "scriptExecutionConcurrency";
+    public static final String PREPARE_REPEATED_SCRIPT_INSERTS = "prepareRepeatedScriptInserts";
+    public static final String CACHE_STARTUP_SCRIPTS = "cacheStartupScripts";
+    public static final String IN_PROCESS_SCRIPT_EXECUTION = "inProcessScriptExecution";
+    public static final String BULK_APPLY_SCHEMA = "bulkApplySchema";
+    public static final String WORKER_ID = "workerId";
+    public static final String CONFIG_PROFILE = "configProfile";
+    public static final String CONFIG_OVERRIDES = "configOverrides";
+    public static final String IN_MEMORY_MEMTABLE_CEILING_IN_MB = "inMemoryMemtableCeilingInMb";
+    public static final String IN_MEMORY_FOLDERS_IN_SHARED_MEMORY = "inMemoryFoldersInSharedMemory";
+    public static final String RAM_DISK_FOLDER = "ramDiskFolder";
+    public static final String RAM_DISK_MIN_FREE_SPACE_IN_MB = "ramDiskMinFreeSpaceInMb";
+    public static final String RAM_DISK_FORCED = "ramDiskForced";
+    static final String GOLDEN_IMAGE_RESTORED = "goldenImageRestored";
     /*
      * Default values
      */
@@ -66,12 +89,14 @@ public class CassandraEmbeddedConfigParameters {
     static final String DEFAULT_ACHILLES_TEST_TRIGGERS_FOLDER = "target/cassandra_embedded/cassandra_triggers";
     static final String DEFAULT_ACHILLES_TEST_HINTS_FOLDER = "target/cassandra_embedded/hints";
     static final String DEFAULT_ACHILLES_TEST_CDC_RAW_FOLDER = "target/cassandra_embedded/cdc_raw";
+    static final String DEFAULT_ACHILLES_TEST_GOLDEN_IMAGE_FOLDER = "target/cassandra_embedded/golden_image";
     static final Set<String> DEFAULT_ACHILLES_TEST_FOLDERS = new HashSet<>(Arrays.asList(DEFAULT_ACHILLES_TEST_DATA_FOLDER,
             DEFAULT_ACHILLES_TEST_COMMIT_LOG_FOLDER, DEFAULT_ACHILLES_TEST_SAVED_CACHES_FOLDER,
             DEFAULT_ACHILLES_TEST_HINTS_FOLDER, DEFAULT_ACHILLES_TEST_CDC_RAW_FOLDER));
     static final String DEFAULT_CASSANDRA_EMBEDDED_LOGBACK_FILE = "target/cassandra_embedded/logback.xml";
     static final String DEFAULT_CASSANDRA_EMBEDDED_CLUSTER_NAME = "Achilles Embedded Cassandra Cluster";
     static final Boolean DEFAULT_CASSANDRA_EMBEDDED_KEYSPACE_DURABLE_WRITE = false;
+    static final Long DEFAULT_CASSANDRA_EMBEDDED_STARTUP_TIMEOUT_IN_MILLIS = 30000L;
     static final String DEFAULT_CASSANDRA_EMBEDDED_LISTEN_ADDRESS = "localhost";
     static final String DEFAULT_CASSANDRA_EMBEDDED_RPC_ADDRESS = "localhost";
     static final String DEFAULT_CASSANDRA_EMBEDDED_BROADCAST_ADDRESS = "localhost";
@@ -96,11 +121,29 @@ public class CassandraEmbeddedConfigParameters {
         defaultParams.put(USE_UNSAFE_CASSANDRA_DAEMON, false);
         defaultParams.put(CLEAN_CASSANDRA_DATA_FILES, true);
         defaultParams.put(CLEAN_CASSANDRA_CONFIG_FILE, true);
-        defaultParams.put(DATA_FILE_FOLDER, DEFAULT_ACHILLES_TEST_DATA_FOLDER);
-        defaultParams.put(COMMIT_LOG_FOLDER, DEFAULT_ACHILLES_TEST_COMMIT_LOG_FOLDER);
-        defaultParams.put(SAVED_CACHES_FOLDER, DEFAULT_ACHILLES_TEST_SAVED_CACHES_FOLDER);
-        defaultParams.put(HINTS_FOLDER, DEFAULT_ACHILLES_TEST_HINTS_FOLDER);
-        defaultParams.put(CDC_RAW_FOLDER, DEFAULT_ACHILLES_TEST_CDC_RAW_FOLDER);
+        final String workerId = parameters.containsKey(WORKER_ID) ? parameters.getTyped(WORKER_ID) : WorkerIsolation.detectWorkerId();
+        if (workerId != null) {
+            defaultParams.put(WORKER_ID, workerId);
+        }
+        defaultParams.put(DATA_FILE_FOLDER, WorkerIsolation.workerFolder(DEFAULT_ACHILLES_TEST_DATA_FOLDER, workerId));
+        defaultParams.put(COMMIT_LOG_FOLDER, WorkerIsolation.workerFolder(DEFAULT_ACHILLES_TEST_COMMIT_LOG_FOLDER, workerId));
+        defaultParams.put(SAVED_CACHES_FOLDER, WorkerIsolation.workerFolder(DEFAULT_ACHILLES_TEST_SAVED_CACHES_FOLDER, workerId));
+        defaultParams.put(HINTS_FOLDER, WorkerIsolation.workerFolder(DEFAULT_ACHILLES_TEST_HINTS_FOLDER, workerId));
+        defaultParams.put(CDC_RAW_FOLDER, WorkerIsolation.workerFolder(DEFAULT_ACHILLES_TEST_CDC_RAW_FOLDER, workerId));
+        defaultParams.put(STARTUP_TIMEOUT_IN_MILLIS, DEFAULT_CASSANDRA_EMBEDDED_STARTUP_TIMEOUT_IN_MILLIS);
+        defaultParams.put(FAST_BOOTSTRAP_ON_FRESH_DATA, true);
+        defaultParams.put(TRACK_DIRTY_TABLES, false);
+        defaultParams.put(KEYSPACE_POOL_SIZE, 0);
+        defaultParams.put(USE_GOLDEN_IMAGE, false);
+        defaultParams.put(GOLDEN_IMAGE_FOLDER, DEFAULT_ACHILLES_TEST_GOLDEN_IMAGE_FOLDER);
+        defaultParams.put(SCRIPT_EXECUTION_CONCURRENCY, 1);
+        defaultParams.put(PREPARE_REPEATED_SCRIPT_INSERTS, false);
+        defaultParams.put(CACHE_STARTUP_SCRIPTS, false);
+        defaultParams.put(IN_PROCESS_SCRIPT_EXECUTION, false);
+        defaultParams.put(BULK_APPLY_SCHEMA, false);
+        defaultParams.put(IN_MEMORY_FOLDERS_IN_SHARED_MEMORY, false);
+        defaultParams.put(RAM_DISK_MIN_FREE_SPACE_IN_MB, RamDiskFolders.DEFAULT_MIN_FREE_SPACE_IN_MB);
+        defaultParams.put(RAM_DISK_FORCED, false);
         defaultParams.put(LOGBACK_FILE, DEFAULT_CASSANDRA_EMBEDDED_LOGBACK_FILE);
         defaultParams.put(CLUSTER_NAME, DEFAULT_CASSANDRA_EMBEDDED_CLUSTER_NAME);
         defaultParams.put(DEFAULT_KEYSPACE_NAME, DEFAULT_CASSANDRA_EMBEDDED_KEYSPACE_NAME);
@@ -110,6 +153,13 @@ public class CassandraEmbeddedConfigParameters {
         return defaultParams;
     }
 
+    /**
+     * @return whether the folder is one of the default folders, possibly specific to a test worker
+     */
+    static boolean isDefaultFolder(String folderPath) {
+        return DEFAULT_ACHILLES_TEST_FOLDERS.contains(WorkerIsolation.sharedFolder(folderPath));
+    }
+
     public static TypedMap getDefaultParameters() {
         return mergeWithDefaultParameters(new TypedMap());
     }
@@ -21,6 +21,9 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 import static io.github.johannesroesch.apollon.embedded.ServerStarter.CASSANDRA_EMBEDDED;
 
 public class CassandraEmbeddedServer {
@@ -31,6 +34,9 @@ public class CassandraEmbeddedServer {
     static final Object SEMAPHORE = new Object();
     private static final AchillesInitializer initializer = new AchillesInitializer();
     static boolean embeddedServerStarted = false;
+    private static KeyspacePool keyspacePool;
+
+    private final StartupReport startupReport = new StartupReport();
 
 
     /**
@@ -42,26 +48,140 @@ public class CassandraEmbeddedServer {
      * @param originalParameters embedded Cassandra server parameters
      */
     public CassandraEmbeddedServer(TypedMap originalParameters) {
-        LOGGER.trace("Start Cassandra Embedded server with server and Achilles config");
+        this();
         TypedMap parameters = CassandraEmbeddedConfigParameters.mergeWithDefaultParameters(originalParameters);
+        startServerIfNeeded(parameters);
+        initialize(parameters);
+    }
+
+    private CassandraEmbeddedServer() {
+        LOGGER.trace("Start Cassandra Embedded server with server and Achilles config");
+    }
+
+    /**
+     * Start a Cassandra embedded server without blocking the calling thread. The session creation
+     * and the startup scripts are chained on the server startup.
+     *
+     * @param originalParameters embedded Cassandra server parameters
+     * @param executor           executor running the server startup and initialization
+     * @return future completed once the server is started and initialized
+     */
+    static CompletableFuture<CassandraEmbeddedServer> startAsync(TypedMap originalParameters, Executor executor) {
+        final CassandraEmbeddedServer server = new CassandraEmbeddedServer();
+        final TypedMap parameters = CassandraEmbeddedConfigParameters.mergeWithDefaultParameters(originalParameters);
+        return CompletableFuture.runAsync(() -> server.startServerIfNeeded(parameters), executor)
+                .thenRun(() -> server.initialize(parameters))
+                .thenApply(ignored -> server);
+    }
+
+    private void startServerIfNeeded(TypedMap parameters) {
         String cassandraHost = System.getProperty(CASSANDRA_HOST);
 
         // No external Cassandra server, start an embedded instance
         if (StringUtils.isBlank(cassandraHost)) {
             synchronized (SEMAPHORE) {
                 if (!embeddedServerStarted) {
-                    CASSANDRA_EMBEDDED.startServer(cassandraHost, parameters);
+                    CASSANDRA_EMBEDDED.startServer(cassandraHost, parameters, startupReport);
                     CassandraEmbeddedServer.embeddedServerStarted = true;
                 } else {
                     CASSANDRA_EMBEDDED.checkAndConfigurePorts(parameters);
                 }
             }
         }
-        initializer.initializeFromParameters(parameters);
+    }
+
+    private void initialize(TypedMap parameters) {
+        initializer.initializeFromParameters(parameters, startupReport);
+        if (parameters.<Boolean>getTyped(CassandraEmbeddedConfigParameters.TRACK_DIRTY_TABLES)) {
+            // Data inserted by the startup scripts is part of the initial state
+            DirtyTableTracker.clear();
+        }
+        CASSANDRA_EMBEDDED.completeGoldenImage(parameters, startupReport);
+        createKeyspacePoolIfNeeded(parameters);
+        startupReport.complete();
+        LOGGER.info("Embedded Cassandra startup report: {}", startupReport.toLogLine());
+        LOGGER.info("Embedded Cassandra memory footprint: {}", startupReport.getMemoryFootprint().toLogLine());
+    }
+
+    private void createKeyspacePoolIfNeeded(TypedMap parameters) {
+        final int keyspacePoolSize = parameters.getTyped(CassandraEmbeddedConfigParameters.KEYSPACE_POOL_SIZE);
+        synchronized (SEMAPHORE) {
+            if (keyspacePoolSize > 0 && keyspacePool == null) {
+                keyspacePool = new KeyspacePool(getNativeSession(), parameters);
+            }
+        }
     }
 
     public CqlSession getNativeSession() {
         return initializer.getSingletonSession();
     }
 
+    /**
+     * @return the pool of keyspaces created at startup, see
+     * {@link CassandraEmbeddedServerBuilder#withKeyspacePool(int)}
+     */
+    public KeyspacePool getKeyspacePool() {
+        synchronized (SEMAPHORE) {
+            ValidationHelper.validateNotNull(keyspacePool, "No keyspace pool has been configured for the embedded Cassandra server");
+            return keyspacePool;
+        }
+    }
+
+    /**
+     * Truncate, in parallel, all the tables written since the server initialization or the last reset.
+     * Data inserted by the startup scripts is not considered as written, tables only seeded by them keep their rows.
+     * <br/>
+     * <strong>A seeded table written afterwards is truncated as a whole and loses its seed rows</strong>,
+     * they are not inserted again, even with {@link CassandraEmbeddedServerBuilder#cacheStartupScripts(boolean)}.
+     * Use {@link #restoreKeyspaceSnapshot(String, String)} to get the seed rows back.
+     * <br/>
+     * <strong>Requires dirty tables tracking to be enabled</strong>, see
+     * {@link CassandraEmbeddedServerBuilder#trackDirtyTables(boolean)}
+     *
+     * @return the number of truncated tables
+     */
+    public int resetDirtyTables() {
+        return DirtyTableTracker.truncateDirtyTables();
+    }
+
+    /**
+     * Capture a named snapshot of a keyspace, e.g. after an expensive seeding step. The tables are flushed
+     * and their SSTables hard-linked into the snapshot. A previous snapshot with the same name is replaced
+     *
+     * @param keyspaceName name of the keyspace
+     * @param snapshotName name of the snapshot
+     */
+    public void snapshotKeyspace(String keyspaceName, String snapshotName) {
+        ValidationHelper.validateNotBlank(snapshotName, "The snapshot name should not be blank");
+        KeyspaceSnapshots.snapshot(keyspaceName, snapshotName);
+    }
+
+    /**
+     * @param keyspaceName name of the keyspace
+     * @param snapshotName name of the snapshot
+     * @return whether the snapshot of the keyspace exists
+     */
+    public boolean hasKeyspaceSnapshot(String keyspaceName, String snapshotName) {
+        return KeyspaceSnapshots.exists(keyspaceName, snapshotName);
+    }
+
+    /**
+     * Restore the data of a keyspace from a snapshot taken with {@link #snapshotKeyspace(String, String)}.
+     * All the tables of the keyspace are truncated and the SSTables of the snapshot hard-linked back,
+     * so the restore time does not depend on the size of the data
+     *
+     * @param keyspaceName name of the keyspace
+     * @param snapshotName name of the snapshot
+     */
+    public void restoreKeyspaceSnapshot(String keyspaceName, String snapshotName) {
+        KeyspaceSnapshots.restore(keyspaceName, snapshotName);
+    }
+
+    /**
+     * @return time spent in each phase of the server startup
+     */
+    public StartupReport getStartupReport() {
+        return startupReport;
+    }
+
 }
@@ -17,11 +17,16 @@
 package io.github.johannesroesch.apollon.embedded;
 
 import com.datastax.oss.driver.api.core.CqlSession;
+import io.netty.util.concurrent.DefaultThreadFactory;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
@@ -30,6 +35,8 @@ public class CassandraEmbeddedServerBuilder {
     private static final boolean cleanConfigFile = true;
     private final List<String> scriptLocations = new ArrayList<>();
     private final Map<String, Map<String, Object>> scriptTemplates = new HashMap<>();
+    private final Map<String, String> bulkFixtures = new LinkedHashMap<>();
+    private final Map<String, Object> configOverrides = new LinkedHashMap<>();
     private final TypedMap cassandraParams = new TypedMap();
     private String listenAddress;
     private String rpcAddress;
@@ -49,10 +56,28 @@ public class CassandraEmbeddedServerBuilder {
     private int thriftPort;
     private int storagePort;
     private int storageSSLPort;
+    private long startupTimeoutInMillis;
     private String clusterName;
     private String keyspaceName;
     private boolean durableWrite = false;
     private boolean useUnsafeCassandraDaemon = false;
+    private boolean useGoldenImage = false;
+    private boolean fastBootstrapOnFreshData = true;
+    private boolean trackDirtyTables = false;
+    private int keyspacePoolSize;
+    private int scriptExecutionConcurrency;
+    private boolean prepareRepeatedScriptInserts = false;
+    private boolean cacheStartupScripts = false;
+    private boolean inProcessScriptExecution = false;
+    private boolean bulkApplySchema = false;
+    private String goldenImageFolder;
+    private String workerId;
+    private ConfigProfile configProfile;
+    private int inMemoryMemtableCeilingInMb;
+    private boolean inMemoryFoldersInSharedMemory = false;
+    private String ramDiskFolder;
+    private long ramDiskMinFreeSpaceInMb;
+    private boolean ramDiskForced;
 
     private CassandraEmbeddedServerBuilder() {
     }
@@ -311,6 +336,20 @@ public class CassandraEmbeddedServerBuilder {
         return this;
     }
 
+    /**
+     * Specify how long to wait for the embedded Cassandra server to start and to accept
+     * connections on the native transport port. Default value is 30000 ms
+     * <br/>
+     * Startup failures are reported as soon as they happen, regardless of this timeout
+     *
+     * @param startupTimeoutInMillis startup timeout in milliseconds
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder withStartupTimeoutInMillis(long startupTimeoutInMillis) {
+        this.startupTimeoutInMillis = startupTimeoutInMillis;
+        return this;
+    }
+
     /**
      * Specify the number threads for concurrent reads for the embedded Cassandra
      * server. If not set, 32
@@ -406,6 +445,39 @@ public class CassandraEmbeddedServerBuilder {
         return this;
     }
 
+    /**
+     * Load a CSV or JSON fixture into a table once the startup scripts are executed. The rows are written
+     * directly into SSTables which are then imported into the table, much faster than INSERT statements
+     * for large fixtures.
+     * <br/>
+     * <ul>
+     *     <li><strong>.csv</strong>: a header line with the column names, then one row per line.
+     *     An empty cell is null, a quoted empty cell <em>""</em> is an empty value</li>
+     *     <li><strong>.json</strong>: an array of JSON objects or one JSON object per line</li>
+     * </ul>
+     * <pre class="code"><code class="java">
+     *
+     * CassandraEmbeddedServerBuilder
+     * .withScript("schema.cql")
+     * .withBulkFixture("users", "fixtures/users.csv")
+     * .withBulkFixture("other_keyspace.events", "fixtures/events.json")
+     * ...
+     * .build();
+     * </code></pre>
+     *
+     * @param table           table name, optionally qualified by its keyspace. The table should be created by the startup scripts.
+     *                        A table is loaded from one fixture only, a fixture can be loaded into several tables
+     * @param fixtureLocation location of the fixture in the <strong>class path</strong>
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder withBulkFixture(String table, String fixtureLocation) {
+        ValidationHelper.validateNotBlank(table, "The table should not be blank while executing CassandraEmbeddedServerBuilder.withBulkFixture()");
+        ValidationHelper.validateNotBlank(fixtureLocation, "The fixture location should not be blank while executing CassandraEmbeddedServerBuilder.withBulkFixture()");
+        ValidationHelper.validateTrue(!bulkFixtures.containsKey(table.trim()), "A bulk fixture is already loaded into table '%s'", table.trim());
+        bulkFixtures.put(table.trim(), fixtureLocation.trim());
+        return this;
+    }
+
     /**
      * Inject Cassandra parameters
      *
@@ -465,6 +537,293 @@ public class CassandraEmbeddedServerBuilder {
         return this;
     }
 
+    /**
+     * Whether the unsafe Cassandra daemon should skip data directories scrubbing, saved caches loading
+     * and commit log replay when the data, commit log and saved caches folders are empty at startup
+     * (e.g. after cleaning them). Default value = 'true'
+     * <br/>
+     * <strong>The fast path only works with the unsafe Cassandra daemon</strong>, see {@link #useUnsafeCassandraDeamon()}:
+     * the standard daemon always runs the full bootstrap path, whatever this setting
+     * <br/>
+     * Disable it to measure the startup time of the full bootstrap path in the
+     * {@link StartupReport} (phases <em>scrubDataDirectories</em>, <em>loadRowAndKeyCache</em>
+     * and <em>recoverCommitLog</em>)
+     *
+     * @param fastBootstrapOnFreshData whether to skip the recovery phases on fresh data folders
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder fastBootstrapOnFreshData(boolean fastBootstrapOnFreshData) {
+        this.fastBootstrapOnFreshData = fastBootstrapOnFreshData;
+        return this;
+    }
+
+    /**
+     * Keep track, on the server side, of the tables written through the native protocol so that
+     * {@link CassandraEmbeddedServer#resetDirtyTables()} only truncates those tables to reset
+     * the test data. Default value = 'false'
+     * <br/>
+     * Tables seeded by the startup scripts then written by a test lose their seed rows on reset
+     *
+     * @param trackDirtyTables whether to track written tables or not
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder trackDirtyTables(boolean trackDirtyTables) {
+        this.trackDirtyTables = trackDirtyTables;
+        return this;
+    }
+
+    /**
+     * Create in the background a pool of identical keyspaces named <em>keyspaceName_0</em> to
+     * <em>keyspaceName_(size-1)</em>, each initialized with the scripts and script templates.
+     * Tests running in parallel can then lease their own clean keyspace from
+     * {@link CassandraEmbeddedServer#getKeyspacePool()}.
+     * <br/>
+     * Scripts should refer to the target keyspace with the <strong>${keyspace}</strong> variable.
+     * <strong>They are then only executed into the keyspaces of the pool</strong>
+     *
+     * @param size number of keyspaces in the pool
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder withKeyspacePool(int size) {
+        this.keyspacePoolSize = size;
+        return this;
+    }
+
+    /**
+     * Execute the DML statements (INSERT, UPDATE, DELETE, BATCH) of the scripts asynchronously,
+     * with at most <em>concurrency</em> statements in flight. Other statements (DDL, ...) are still
+     * executed synchronously and in order, once all pending DML statements are done.
+     * <br/>
+     * Default = 1, all statements are executed synchronously
+     *
+     * @param concurrency maximum number of in-flight statements
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder withScriptExecutionConcurrency(int concurrency) {
+        this.scriptExecutionConcurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Prepare the INSERT statements repeated with different literals in the scripts, e.g.
+     * <em>INSERT INTO users(id, name) VALUES(1, 'john');</em>, and execute them as bound statements
+     * so that the server parses each INSERT shape only once.
+     * <br/>
+     * Default = false
+     *
+     * @param prepareRepeatedScriptInserts whether to prepare the repeated INSERT statements of the scripts
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder prepareRepeatedScriptInserts(boolean prepareRepeatedScriptInserts) {
+        this.prepareRepeatedScriptInserts = prepareRepeatedScriptInserts;
+        return this;
+    }
+
+    /**
+     * Parse each startup script and script template only once per JVM, and remember the scripts already
+     * applied successfully to the keyspace of the running server. A later server instantiation with the same
+     * keyspace and scripts (e.g. by the next test class) then neither parses nor executes them again.
+     * <br/>
+     * <strong>Data inserted by the scripts is not inserted again after being truncated by a test</strong>
+     * <br/>
+     * Default = false
+     *
+     * @param cacheStartupScripts whether to cache the startup scripts
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder cacheStartupScripts(boolean cacheStartupScripts) {
+        this.cacheStartupScripts = cacheStartupScripts;
+        return this;
+    }
+
+    /**
+     * Execute the startup scripts, script templates and the scripts of the keyspace pool directly in the
+     * embedded Cassandra server, without the driver, the native protocol and the loopback network.
+     * The session returned by the builder still uses the driver.
+     * <br/>
+     * The statements are executed synchronously, in order, see {@link ScriptExecutor#executeInProcess(boolean)}.
+     * Ignored when the Cassandra server is not embedded in this JVM
+     * <br/>
+     * Default = false
+     *
+     * @param inProcessScriptExecution whether to execute the startup scripts in-process
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder inProcessScriptExecution(boolean inProcessScriptExecution) {
+        this.inProcessScriptExecution = inProcessScriptExecution;
+        return this;
+    }
+
+    /**
+     * Execute the startup scripts in-process and apply their consecutive schema statements as one combined
+     * schema change, instead of one schema migration and one driver schema refresh per CREATE TABLE/TYPE/INDEX.
+     * The schema metadata of the session is refreshed once per script.
+     * <br/>
+     * See {@link ScriptExecutor#bulkApplySchema(boolean)}. Ignored when the Cassandra server is not embedded in this JVM
+     * <br/>
+     * Default = false
+     *
+     * @param bulkApplySchema whether to apply the schema statements of the startup scripts in bulk
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder bulkApplySchema(boolean bulkApplySchema) {
+        this.bulkApplySchema = bulkApplySchema;
+        return this;
+    }
+
+    /**
+     * Start the embedded Cassandra server from a golden image of the data folders.
+     * <br/>
+     * The first start saves the bootstrapped data and saved caches folders (system keyspaces, token metadata
+     * and the schema created by the startup scripts). Later starts copy or hard-link this image instead of
+     * bootstrapping Cassandra from scratch. The image is invalidated whenever the configuration, the
+     * startup scripts or the Cassandra version change.
+     * <br/>
+     * <strong>Requires the data files to be cleaned at startup</strong>
+     *
+     * @param useGoldenImage whether to start from a golden image or not
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder useGoldenImage(boolean useGoldenImage) {
+        this.useGoldenImage = useGoldenImage;
+        return this;
+    }
+
+    /**
+     * Specify the folder where golden images are stored. Default value is
+     * 'target/cassandra_embedded/golden_image'
+     *
+     * @param goldenImageFolder golden image folder
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder withGoldenImageFolder(String goldenImageFolder) {
+        this.goldenImageFolder = goldenImageFolder;
+        return this;
+    }
+
+    /**
+     * Apply a named set of performance settings to the Cassandra configuration, e.g.
+     * {@link ConfigProfile#FAST_TESTS} or {@link ConfigProfile#LOW_MEMORY}.
+     * By default, no profile is applied
+     *
+     * @param configProfile configuration profile
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder withConfigProfile(ConfigProfile configProfile) {
+        this.configProfile = configProfile;
+        return this;
+    }
+
+    /**
+     * Override a setting of the Cassandra configuration, after the configuration profile if any.
+     * The setting is the name of a field of <em>org.apache.cassandra.config.Config</em>,
+     * as in <em>cassandra.yaml</em>, e.g. <em>withConfigOverride("memtable_heap_space_in_mb", 32)</em>
+     *
+     * @param setting name of the Cassandra setting
+     * @param value   value of the setting, converted from its string representation. "null" resets an optional setting
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder withConfigOverride(String setting, Object value) {
+        this.configOverrides.put(setting, value);
+        return this;
+    }
+
+    /**
+     * Keep all the data in memtables, for tests that never need durability: no write goes to the commitlog,
+     * including the writes to the system keyspaces, and the memtables are not flushed until they use
+     * <strong>memtableCeilingInMb</strong> MB, on heap or off heap depending on the memtable allocation type.
+     * Above the ceiling, memtables are flushed to SSTables as usual.
+     * <br/>
+     * The heap of the JVM should be large enough for the ceiling on top of the memory used by the tests.
+     * By default, the in-memory storage is disabled
+     *
+     * @param memtableCeilingInMb memory ceiling of the memtables, in MB
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder withInMemoryStorage(int memtableCeilingInMb) {
+        this.inMemoryMemtableCeilingInMb = memtableCeilingInMb;
+        return this;
+    }
+
+    /**
+     * With the in-memory storage, move the default data, commitlog, saved caches, hints and cdc_raw folders
+     * to '/dev/shm' when available, so that the remaining writes, e.g. flushes above the memory ceiling,
+     * never touch the disk. Folders configured explicitly are kept. Default value is false.
+     * See {@link #withRamDiskFolders(String)} to use another RAM disk
+     *
+     * @param inMemoryFoldersInSharedMemory whether to move the default folders to '/dev/shm'
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder withInMemoryFoldersInSharedMemory(boolean inMemoryFoldersInSharedMemory) {
+        this.inMemoryFoldersInSharedMemory = inMemoryFoldersInSharedMemory;
+        return this;
+    }
+
+    /**
+     * Place the default data, commitlog, saved caches, hints and cdc_raw folders on the RAM-backed file system
+     * '/dev/shm' when it is available and large enough, otherwise keep them on disk.
+     * The folders are deleted when the server is shut down
+     *
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder withRamDiskFolders() {
+        return withRamDiskFolders(RamDiskFolders.SHARED_MEMORY.toString());
+    }
+
+    /**
+     * Place the default data, commitlog, saved caches, hints and cdc_raw folders on a RAM-backed file system,
+     * e.g. a tmpfs mount, when it is available and large enough, otherwise keep them on disk. A folder which is not
+     * a tmpfs or ramfs file system is not used, unless forced with {@link #withRamDiskForced(boolean)}.
+     * Folders configured explicitly are not moved. The folders are deleted when the server is shut down
+     *
+     * @param ramDiskFolder root folder of the RAM-backed file system
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder withRamDiskFolders(String ramDiskFolder) {
+        this.ramDiskFolder = ramDiskFolder;
+        return this;
+    }
+
+    /**
+     * Specify the free space required on the RAM disk to place the folders on it. Default value is 512 MB
+     *
+     * @param ramDiskMinFreeSpaceInMb free space required on the RAM disk, in MB
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder withRamDiskMinFreeSpaceInMb(long ramDiskMinFreeSpaceInMb) {
+        this.ramDiskMinFreeSpaceInMb = ramDiskMinFreeSpaceInMb;
+        return this;
+    }
+
+    /**
+     * Place the folders on the RAM disk even when its file system is not tmpfs or ramfs, e.g. for a RAM disk
+     * formatted with another file system. Default value is false: the folders stay on disk
+     *
+     * @param ramDiskForced whether to skip the file system check of the RAM disk
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder withRamDiskForced(boolean ramDiskForced) {
+        this.ramDiskForced = ramDiskForced;
+        return this;
+    }
+
+    /**
+     * Specify the id of the parallel test worker running the embedded Cassandra server.
+     * The default folders and the ports of each worker are then isolated from the other workers:
+     * the default folders become 'target/cassandra_embedded/worker-&lt;id&gt;/xxx'.
+     * <br/>
+     * By default, the id is detected from the 'apollon.worker.id' or 'org.gradle.test.worker' system properties.
+     * Surefire does not pass its fork number to the forks: set 'apollon.worker.id' to '${surefire.forkNumber}'
+     * in its 'systemPropertyVariables', otherwise each Surefire fork falls back to the id of its process
+     *
+     * @param workerId id of the test worker, e.g. the Surefire fork number
+     * @return CassandraEmbeddedServerBuilder
+     */
+    public CassandraEmbeddedServerBuilder withWorkerId(String workerId) {
+        this.workerId = workerId;
+        return this;
+    }
+
     /**
      * Start an embedded Cassandra server but DO NOT bootstrap Achilles
      *
@@ -479,6 +838,60 @@ public class CassandraEmbeddedServerBuilder {
         return new CassandraEmbeddedServer(buildConfigMap());
     }
 
+    /**
+     * Start an embedded Cassandra server in a background thread.
+     * <br/>
+     * The calling thread is not blocked while Cassandra bootstraps so the startup can overlap
+     * with other initialization work (e.g. Spring context creation, fixtures parsing). Session creation
+     * and startup scripts execution are chained on the server startup.
+     * <br/>
+     * <pre class="code"><code class="java">
+     * CompletableFuture&lt;CassandraEmbeddedServer&gt; futureServer = CassandraEmbeddedServerBuilder.builder()
+     *   .withScript("schema.cql")
+     *   .buildServerAsync();
+     *
+     * // other initialization work
+     *
+     * CqlSession session = futureServer.join().getNativeSession();
+     * </code></pre>
+     *
+     * @return future completed with the started and initialized server
+     */
+    public CompletableFuture<CassandraEmbeddedServer> buildServerAsync() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("Apollon-bootstrap", true));
+        return CassandraEmbeddedServer.startAsync(buildConfigMap(), executor)
+                .whenComplete((server, throwable) -> executor.shutdown());
+    }
+
+    /**
+     * Start a local cluster of <em>nodeCount</em> Cassandra nodes, each one in its own child JVM
+     * and bound to its own loopback address 127.0.0.1 ... 127.0.0.N.
+     * <br/>
+     * The default keyspace is created with a replication factor of min(3, nodeCount)
+     * and the startup scripts are executed once the whole cluster is up.
+     * Close the cluster to stop all the nodes.
+     *
+     * @param nodeCount number of nodes
+     * @return the started local cluster
+     */
+    public LocalCluster buildLocalCluster(int nodeCount) {
+        return LocalCluster.start(buildConfigMap(), nodeCount);
+    }
+
+    /**
+     * Start a cluster of <em>nodeCount</em> Cassandra nodes inside the current JVM, each one
+     * in its own isolated class loader and bound to its own loopback address 127.0.0.1 ... 127.0.0.N.
+     * <br/>
+     * It has the same topology as {@link #buildLocalCluster(int)} with a single JVM to start,
+     * the nodes are started one after the other. Close the cluster to stop all the nodes.
+     *
+     * @param nodeCount number of nodes
+     * @return the started in-JVM cluster
+     */
+    public InJvmCluster buildInJvmCluster(int nodeCount) {
+        return InJvmCluster.start(buildConfigMap(), nodeCount);
+    }
+
     private TypedMap buildConfigMap() {
 
 
@@ -536,11 +949,14 @@ public class CassandraEmbeddedServerBuilder {
         if (storageSSLPort > 0)
             cassandraParams.put(CassandraEmbeddedConfigParameters.CASSANDRA_STORAGE_SSL_PORT, storageSSLPort);
 
+        if (startupTimeoutInMillis > 0)
+            cassandraParams.put(CassandraEmbeddedConfigParameters.STARTUP_TIMEOUT_IN_MILLIS, startupTimeoutInMillis);
+
         if (concurrentReads > 0)
             cassandraParams.put(CassandraEmbeddedConfigParameters.CASSANDRA_CONCURRENT_READS, concurrentReads);
 
         if (concurrentWrites > 0)
-            cassandraParams.put(CassandraEmbeddedConfigParameters.CASSANDRA_CONCURRENT_READS, concurrentWrites);
+            cassandraParams.put(CassandraEmbeddedConfigParameters.CASSANDRA_CONCURRENT_WRITES, concurrentWrites);
 
         if (!scriptLocations.isEmpty()) {
             final List<String> existingScriptLocations = cassandraParams.getTypedOr(CassandraEmbeddedConfigParameters.SCRIPT_LOCATIONS, new ArrayList<>());
@@ -554,10 +970,79 @@ public class CassandraEmbeddedServerBuilder {
             cassandraParams.put(CassandraEmbeddedConfigParameters.SCRIPT_TEMPLATES, existingScriptTemplates);
         }
 
+        if (!bulkFixtures.isEmpty()) {
+            final Map<String, String> existingBulkFixtures = cassandraParams.getTypedOr(CassandraEmbeddedConfigParameters.BULK_FIXTURES, new LinkedHashMap<>());
+            existingBulkFixtures.putAll(bulkFixtures);
+            cassandraParams.put(CassandraEmbeddedConfigParameters.BULK_FIXTURES, existingBulkFixtures);
+        }
+
         if (useUnsafeCassandraDaemon) {
             cassandraParams.put(CassandraEmbeddedConfigParameters.USE_UNSAFE_CASSANDRA_DAEMON, true);
         }
 
+        cassandraParams.put(CassandraEmbeddedConfigParameters.FAST_BOOTSTRAP_ON_FRESH_DATA, fastBootstrapOnFreshData);
+
+        if (keyspacePoolSize > 0)
+            cassandraParams.put(CassandraEmbeddedConfigParameters.KEYSPACE_POOL_SIZE, keyspacePoolSize);
+
+        if (scriptExecutionConcurrency > 0)
+            cassandraParams.put(CassandraEmbeddedConfigParameters.SCRIPT_EXECUTION_CONCURRENCY, scriptExecutionConcurrency);
+
+        if (prepareRepeatedScriptInserts) {
+            cassandraParams.put(CassandraEmbeddedConfigParameters.PREPARE_REPEATED_SCRIPT_INSERTS, true);
+        }
+
+        if (cacheStartupScripts) {
+            cassandraParams.put(CassandraEmbeddedConfigParameters.CACHE_STARTUP_SCRIPTS, true);
+        }
+
+        if (inProcessScriptExecution) {
+            cassandraParams.put(CassandraEmbeddedConfigParameters.IN_PROCESS_SCRIPT_EXECUTION, true);
+        }
+
+        if (bulkApplySchema) {
+            cassandraParams.put(CassandraEmbeddedConfigParameters.BULK_APPLY_SCHEMA, true);
+        }
+
+        if (trackDirtyTables) {
+            cassandraParams.put(CassandraEmbeddedConfigParameters.TRACK_DIRTY_TABLES, true);
+        }
+
+        if (useGoldenImage) {
+            cassandraParams.put(CassandraEmbeddedConfigParameters.USE_GOLDEN_IMAGE, true);
+        }
+
+        if (isNotBlank(goldenImageFolder))
+            cassandraParams.put(CassandraEmbeddedConfigParameters.GOLDEN_IMAGE_FOLDER, goldenImageFolder);
+
+        if (isNotBlank(workerId))
+            cassandraParams.put(CassandraEmbeddedConfigParameters.WORKER_ID, workerId);
+
+        if (configProfile != null)
+            cassandraParams.put(CassandraEmbeddedConfigParameters.CONFIG_PROFILE, configProfile);
+
+        if (inMemoryMemtableCeilingInMb > 0)
+            cassandraParams.put(CassandraEmbeddedConfigParameters.IN_MEMORY_MEMTABLE_CEILING_IN_MB, inMemoryMemtableCeilingInMb);
+
+        if (inMemoryFoldersInSharedMemory) {
+            cassandraParams.put(CassandraEmbeddedConfigParameters.IN_MEMORY_FOLDERS_IN_SHARED_MEMORY, true);
+        }
+
+        if (isNotBlank(ramDiskFolder))
+            cassandraParams.put(CassandraEmbeddedConfigParameters.RAM_DISK_FOLDER, ramDiskFolder);
+
+        if (ramDiskMinFreeSpaceInMb > 0)
+            cassandraParams.put(CassandraEmbeddedConfigParameters.RAM_DISK_MIN_FREE_SPACE_IN_MB, ramDiskMinFreeSpaceInMb);
+
+        if (ramDiskForced)
+            cassandraParams.put(CassandraEmbeddedConfigParameters.RAM_DISK_FORCED, true);
+
+        if (!configOverrides.isEmpty()) {
+            final Map<String, Object> existingConfigOverrides = cassandraParams.getTypedOr(CassandraEmbeddedConfigParameters.CONFIG_OVERRIDES, new LinkedHashMap<>());
+            existingConfigOverrides.putAll(configOverrides);
+            cassandraParams.put(CassandraEmbeddedConfigParameters.CONFIG_OVERRIDES, existingConfigOverrides);
+        }
+
         cassandraParams.put(CassandraEmbeddedConfigParameters.KEYSPACE_DURABLE_WRITE, durableWrite);
 
         return CassandraEmbeddedConfigParameters.mergeWithDefaultParameters(cassandraParams);
@@ -53,6 +53,10 @@ public class CassandraShutDownHook {
     private AtomicReference<CassandraDaemon> cassandraDaemonRef;
     private OrderedShutdownHook orderedShutdownHook;
     private ExecutorService executor;
+    private Runnable releaseReservedPorts = () -> {
+    };
+    private Runnable deleteRamDiskFolders = () -> {
+    };
 
     void addCassandraDaemonRef(AtomicReference<CassandraDaemon> cassandraDaemonRef) {
         this.cassandraDaemonRef = cassandraDaemonRef;
@@ -66,6 +70,14 @@ public class CassandraShutDownHook {
         this.executor = executor;
     }
 
+    void addReleaseReservedPorts(Runnable releaseReservedPorts) {
+        this.releaseReservedPorts = releaseReservedPorts;
+    }
+
+    void addDeleteRamDiskFolders(Runnable deleteRamDiskFolders) {
+        this.deleteRamDiskFolders = deleteRamDiskFolders;
+    }
+
     /**
      * Trigger the shutdown of:
      * <ul>
@@ -86,6 +98,8 @@ public class CassandraShutDownHook {
             LOGGER.info("Shutting down embedded Cassandra server");
             // Then shutdown the server
             executor.shutdownNow();
+            releaseReservedPorts.run();
+            deleteRamDiskFolders.run();
             CassandraEmbeddedServer.embeddedServerStarted = false;
         }
     }
@@ -0,0 +1,130 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import org.apache.cassandra.config.Config;
+
+/**
+ * Named sets of performance settings applied on top of the embedded configuration of {@link ApollonCassandraConfig}.
+ * <br/>
+ * Individual settings can still be overridden with
+ * {@link CassandraEmbeddedServerBuilder#withConfigOverride(String, Object)}, which are applied after the profile.
+ */
+public enum ConfigProfile {
+
+    /**
+     * Fastest startup for unit tests: a single token, unthrottled compaction, no saved caches to load
+     */
+    FAST_TESTS {
+        @Override
+        void apply(Config config) {
+            config.num_tokens = 1;
+            config.compaction_throughput_mb_per_sec = 0;
+            config.concurrent_compactors = 1;
+            config.memtable_flush_writers = 1;
+            config.key_cache_save_period = 0;
+            config.counter_cache_save_period = 0;
+            config.commitlog_sync = Config.CommitLogSync.periodic;
+            config.commitlog_sync_period_in_ms = 10000;
+        }
+    },
+
+    /**
+     * Smallest footprint, e.g. for CI agents running many parallel test workers: small off-heap memtables,
+     * no key, counter nor chunk cache, small thread pools and a single token.
+     * The concurrent reads and writes default to 4 unless configured with the builder.
+     * The footprint is reported by {@link StartupReport#getMemoryFootprint()}
+     */
+    LOW_MEMORY {
+        @Override
+        void apply(Config config) {
+            config.num_tokens = 1;
+            config.memtable_allocation_type = Config.MemtableAllocationType.offheap_buffers;
+            config.memtable_heap_space_in_mb = 8;
+            config.memtable_offheap_space_in_mb = 16;
+            config.file_cache_enabled = false;
+            config.file_cache_size_in_mb = 8;
+            config.networking_cache_size_in_mb = 8;
+            config.key_cache_size_in_mb = 0L;
+            config.counter_cache_size_in_mb = 0L;
+            config.prepared_statements_cache_size_mb = 1L;
+            config.column_index_cache_size_in_kb = 2;
+            config.concurrent_counter_writes = 2;
+            config.concurrent_materialized_view_writes = 2;
+            config.concurrent_materialized_view_builders = 1;
+            config.concurrent_validations = 1;
+            config.concurrent_compactors = 1;
+            config.memtable_flush_writers = 1;
+            config.native_transport_max_threads = 8;
+            config.commitlog_segment_size_in_mb = 8;
+            config.commitlog_total_space_in_mb = 16;
+        }
+
+        @Override
+        int defaultConcurrency() {
+            return 4;
+        }
+    },
+
+    /**
+     * Bulk loading and load tests: large off-heap memtables, unthrottled compaction
+     */
+    THROUGHPUT {
+        @Override
+        void apply(Config config) {
+            config.memtable_allocation_type = Config.MemtableAllocationType.offheap_objects;
+            config.memtable_heap_space_in_mb = 256;
+            config.memtable_offheap_space_in_mb = 512;
+            config.memtable_flush_writers = 2;
+            config.concurrent_compactors = 2;
+            config.compaction_throughput_mb_per_sec = 0;
+            config.native_transport_max_threads = 128;
+            config.commitlog_segment_size_in_mb = 32;
+            config.commitlog_total_space_in_mb = 1024;
+        }
+    },
+
+    /**
+     * Cassandra defaults, sized from the heap: to reproduce the behavior of a real node
+     */
+    PRODUCTION_LIKE {
+        @Override
+        void apply(Config config) {
+            config.num_tokens = 16;
+            config.memtable_heap_space_in_mb = null;
+            config.memtable_offheap_space_in_mb = null;
+            config.commitlog_total_space_in_mb = null;
+            config.key_cache_size_in_mb = null;
+            config.concurrent_compactors = null;
+            config.compaction_throughput_mb_per_sec = 64;
+            config.hinted_handoff_enabled = true;
+            config.auto_snapshot = true;
+            config.disk_failure_policy = Config.DiskFailurePolicy.stop;
+        }
+    };
+
+    static final int DEFAULT_CONCURRENCY = 32;
+
+    abstract void apply(Config config);
+
+    /**
+     * @return concurrent reads and writes, unless configured with the builder
+     */
+    int defaultConcurrency() {
+        return DEFAULT_CONCURRENCY;
+    }
+}
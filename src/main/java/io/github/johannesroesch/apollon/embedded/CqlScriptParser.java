@@ -0,0 +1,106 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+
+import java.util.regex.Pattern;
+
+/**
+ * Incremental parser turning the lines of a CQL script into statements.
+ * <br/>
+ * Lines are fed one at a time so that only the statement being parsed is kept in memory.
+ * BATCH statements (BEGIN ... APPLY) and code blocks delimited by <strong>$$</strong> are kept whole.
+ */
+final class CqlScriptParser {
+    private static final String COMMA = ";";
+    private static final String BATCH_BEGIN = "BEGIN";
+    private static final String BATCH_APPLY = "APPLY";
+
+    private static final Pattern CODE_DELIMITER_START = Pattern.compile("^\\s*(?:AS)?\\s*\\$\\$\\s*$");
+    private static final Pattern CODE_DELIMITER_END = Pattern.compile("^\\s*\\$\\$\\s*;\\s*$");
+
+    private StringBuilder statement = new StringBuilder();
+    private StringBuilder batchStatement = new StringBuilder();
+    private boolean batch = false;
+    private boolean codeBlock = false;
+    private int statementStartLine = -1;
+    private int completedStatementLine = -1;
+
+    /**
+     * @param line next non blank line of the script
+     * @return the statement completed by this line or null if the statement is not complete yet
+     */
+    SimpleStatement accept(String line) {
+        return accept(line, -1);
+    }
+
+    /**
+     * @param line       next non blank line of the script
+     * @param lineNumber number of the line in the script
+     * @return the statement completed by this line or null if the statement is not complete yet
+     */
+    SimpleStatement accept(String line, int lineNumber) {
+        if (statementStartLine < 0) {
+            statementStartLine = lineNumber;
+        }
+        final String trimmed = line.trim();
+        if (trimmed.startsWith(BATCH_BEGIN)) {
+            batch = true;
+        }
+        if (CODE_DELIMITER_START.matcher(trimmed).matches()) {
+            codeBlock = !codeBlock;
+        }
+
+        SimpleStatement completed = null;
+        if (batch) {
+            batchStatement.append(" ").append(line);
+            if (trimmed.startsWith(BATCH_APPLY)) {
+                batch = false;
+                completed = SimpleStatement.newInstance(batchStatement.toString());
+                batchStatement = new StringBuilder();
+            }
+        } else if (codeBlock) {
+            statement.append(line);
+            if (CODE_DELIMITER_END.matcher(trimmed).matches()) {
+                codeBlock = false;
+                completed = SimpleStatement.newInstance(statement.toString());
+                statement = new StringBuilder();
+            }
+        } else {
+            statement.append(line);
+            if (trimmed.endsWith(COMMA)) {
+                completed = SimpleStatement.newInstance(statement.toString());
+                statement = new StringBuilder();
+            } else {
+                statement.append(" ");
+            }
+        }
+        if (completed != null) {
+            completedStatementLine = statementStartLine;
+            statementStartLine = -1;
+        }
+        return completed;
+    }
+
+    /**
+     * @return the line number where the last completed statement starts
+     */
+    int getCompletedStatementLine() {
+        return completedStatementLine;
+    }
+}
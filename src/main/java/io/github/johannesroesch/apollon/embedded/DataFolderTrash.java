@@ -0,0 +1,170 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import io.github.johannesroesch.apollon.exception.ApollonException;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Empty the data folders of the previous runs without deleting their content on the startup path.
+ * <br/>
+ * The content of each folder is atomically moved to a sibling trash folder, <em>.&lt;folder&gt;.apollon-trash-&lt;uuid&gt;</em>,
+ * which is deleted by a low priority background thread while Cassandra starts in the emptied folder. The folder
+ * itself is kept, with its permissions, so that it can be a mount point. Content that cannot be moved atomically,
+ * e.g. when the parent folder is not writable, is deleted synchronously.
+ * <br/>
+ * Trash folders left by a JVM that exited before the end of the deletion are deleted with the next ones.
+ */
+final class DataFolderTrash {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataFolderTrash.class);
+
+    static final String TRASH_SUFFIX = ".apollon-trash-";
+
+    private static final ExecutorService DELETER = Executors.newSingleThreadExecutor(
+            new DefaultThreadFactory("Apollon-trash", true, Thread.MIN_PRIORITY));
+
+    private DataFolderTrash() {
+    }
+
+    /**
+     * Empty the folder, its previous content being deleted in the background
+     *
+     * @param folder data folder to empty
+     */
+    static void empty(File folder) {
+        if (!folder.isDirectory()) {
+            return;
+        }
+        deleteLeftoverTrashFolders(folder);
+
+        final File[] content = folder.listFiles();
+        if (content == null || content.length == 0) {
+            return;
+        }
+        final File trashFolder = new File(folder.getAbsoluteFile().getParentFile(), trashPrefix(folder) + UUID.randomUUID());
+        if (!trashFolder.mkdir()) {
+            LOGGER.debug("Cannot create trash folder '{}', cleaning up '{}' synchronously", trashFolder, folder);
+            cleanDirectory(folder);
+            return;
+        }
+
+        LOGGER.info("Cleaning up embedded Cassandra data directory '{}' in the background", folder.getAbsolutePath());
+        for (File file : content) {
+            try {
+                Files.move(file.toPath(), new File(trashFolder, file.getName()).toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                deleteNow(file);
+            } catch (IOException e) {
+                LOGGER.debug("Cannot move '{}' to the trash, deleting it synchronously", file, e);
+                deleteNow(file);
+            }
+        }
+        deleteInBackground(trashFolder);
+    }
+
+    /**
+     * Wait for the deletion of the folders trashed so far
+     *
+     * @return whether all the deletions completed before the timeout
+     */
+    static boolean awaitDeletions(long timeout, TimeUnit unit) {
+        try {
+            DELETER.submit(() -> {
+            }).get(timeout, unit);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        } catch (RejectedExecutionException e) {
+            return DELETER.isTerminated();
+        }
+    }
+
+    /**
+     * Stop the background thread once the folders trashed so far are deleted, e.g. when the node of an in-JVM
+     * cluster stops. The folders trashed afterwards are deleted synchronously
+     */
+    static void shutdown() {
+        DELETER.shutdown();
+    }
+
+    private static void deleteLeftoverTrashFolders(File folder) {
+        final File parent = folder.getAbsoluteFile().getParentFile();
+        final String trashPrefix = trashPrefix(folder);
+        final File[] leftovers = parent == null ? null : parent.listFiles(file -> file.getName().startsWith(trashPrefix));
+        if (leftovers != null) {
+            for (File leftover : leftovers) {
+                deleteInBackground(leftover);
+            }
+        }
+    }
+
+    private static void deleteInBackground(File trashFolder) {
+        try {
+            DELETER.execute(() -> deleteQuietly(trashFolder));
+        } catch (RejectedExecutionException e) {
+            deleteQuietly(trashFolder);
+        }
+    }
+
+    private static String trashPrefix(File folder) {
+        return "." + folder.getAbsoluteFile().getName() + TRASH_SUFFIX;
+    }
+
+    private static void deleteQuietly(File trashFolder) {
+        final long start = System.nanoTime();
+        if (FileUtils.deleteQuietly(trashFolder)) {
+            LOGGER.debug("Deleted trash folder '{}' in {} ms", trashFolder, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } else if (trashFolder.exists()) {
+            LOGGER.warn("Cannot delete trash folder '{}', it will be deleted at the next startup", trashFolder);
+        }
+    }
+
+    private static void deleteNow(File file) {
+        try {
+            FileUtils.forceDelete(file);
+        } catch (IOException e) {
+            throw new ApollonException(String.format("Cannot delete %s", file), e);
+        }
+    }
+
+    private static void cleanDirectory(File folder) {
+        try {
+            FileUtils.cleanDirectory(folder);
+        } catch (IOException e) {
+            throw new ApollonException(String.format("Cannot clean data folder %s", folder), e);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import io.github.johannesroesch.apollon.exception.ApollonException;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.apache.cassandra.cql3.*;
+import org.apache.cassandra.cql3.statements.BatchStatement;
+import org.apache.cassandra.cql3.statements.ModificationStatement;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.schema.Schema;
+import org.apache.cassandra.schema.SchemaConstants;
+import org.apache.cassandra.schema.TableId;
+import org.apache.cassandra.service.ClientState;
+import org.apache.cassandra.service.QueryState;
+import org.apache.cassandra.transport.messages.ResultMessage;
+import org.apache.cassandra.utils.MD5Digest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Query handler of the embedded Cassandra server keeping track of the tables written through the
+ * native protocol, so that only those tables need to be truncated to reset the test data.
+ * <br/>
+ * Every request is delegated to the default {@link QueryProcessor}.
+ */
+public class DirtyTableTracker implements QueryHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirtyTableTracker.class);
+
+    static final String QUERY_HANDLER_PROPERTY = "cassandra.custom_query_handler_class";
+
+    private static final Set<TableId> DIRTY_TABLES = ConcurrentHashMap.newKeySet();
+
+    private final QueryHandler delegate = QueryProcessor.instance;
+
+    static boolean isInstalled() {
+        return ClientState.getCQLQueryHandler() instanceof DirtyTableTracker;
+    }
+
+    /**
+     * Forget the tables written so far, e.g. by the startup scripts
+     */
+    static void clear() {
+        DIRTY_TABLES.clear();
+    }
+
+    /**
+     * Truncate in parallel all the tables written since the last reset
+     *
+     * @return the number of truncated tables
+     */
+    static int truncateDirtyTables() {
+        ValidationHelper.validateTrue(isInstalled(), "Dirty tables tracking is not enabled on the embedded Cassandra server");
+
+        final List<ColumnFamilyStore> stores = new ArrayList<>();
+        for (TableId tableId : DIRTY_TABLES) {
+            DIRTY_TABLES.remove(tableId);
+            final ColumnFamilyStore store = Schema.instance.getColumnFamilyStoreInstance(tableId);
+            // The table may have been dropped in the meantime
+            if (store != null) {
+                stores.add(store);
+            }
+        }
+        if (stores.isEmpty()) {
+            return 0;
+        }
+
+        final int threads = Math.min(stores.size(), Runtime.getRuntime().availableProcessors());
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new DefaultThreadFactory("Apollon-truncate", true));
+        try {
+            final List<CompletableFuture<Void>> truncations = new ArrayList<>();
+            for (ColumnFamilyStore store : stores) {
+                LOGGER.debug("Truncating dirty table {}.{}", store.keyspace.getName(), store.name);
+                truncations.add(CompletableFuture.runAsync(store::truncateBlocking, executor));
+            }
+            CompletableFuture.allOf(truncations.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            throw new ApollonException("Cannot truncate dirty tables", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        return stores.size();
+    }
+
+    private static void markDirty(CQLStatement statement) {
+        if (statement instanceof ModificationStatement) {
+            markDirty((ModificationStatement) statement);
+        } else if (statement instanceof BatchStatement) {
+            ((BatchStatement) statement).getStatements().forEach(DirtyTableTracker::markDirty);
+        }
+    }
+
+    private static void markDirty(ModificationStatement statement) {
+        if (!SchemaConstants.isSystemKeyspace(statement.keyspace()) && !statement.isVirtual()) {
+            DIRTY_TABLES.add(statement.metadata().id);
+        }
+    }
+
+    @Override
+    public CQLStatement parse(String query, QueryState state, QueryOptions options) {
+        return delegate.parse(query, state, options);
+    }
+
+    @Override
+    public ResultMessage process(CQLStatement statement, QueryState state, QueryOptions options,
+                                 Map<String, ByteBuffer> customPayload, long queryStartNanoTime) {
+        markDirty(statement);
+        return delegate.process(statement, state, options, customPayload, queryStartNanoTime);
+    }
+
+    @Override
+    public ResultMessage.Prepared prepare(String query, ClientState clientState, Map<String, ByteBuffer> customPayload) {
+        return delegate.prepare(query, clientState, customPayload);
+    }
+
+    @Override
+    public Prepared getPrepared(MD5Digest id) {
+        return delegate.getPrepared(id);
+    }
+
+    @Override
+    public ResultMessage processPrepared(CQLStatement statement, QueryState state, QueryOptions options,
+                                         Map<String, ByteBuffer> customPayload, long queryStartNanoTime) {
+        markDirty(statement);
+        return delegate.processPrepared(statement, state, options, customPayload, queryStartNanoTime);
+    }
+
+    @Override
+    public ResultMessage processBatch(BatchStatement statement, QueryState state, BatchQueryOptions options,
+                                      Map<String, ByteBuffer> customPayload, long queryStartNanoTime) {
+        markDirty(statement);
+        return delegate.processBatch(statement, state, options, customPayload, queryStartNanoTime);
+    }
+}
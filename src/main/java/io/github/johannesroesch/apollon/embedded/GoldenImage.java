@@ -0,0 +1,354 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.github.johannesroesch.apollon.exception.ApollonException;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Directories;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.utils.FBUtilities;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.johannesroesch.apollon.embedded.CassandraEmbeddedConfigParameters.*;
+
+/**
+ * Snapshot of a fully bootstrapped data directory (system keyspaces, token metadata and the schema
+ * created by the startup scripts).
+ * <br/>
+ * The image is keyed by a hash of the configuration, the startup scripts and the {@link ApollonCassandraConfig}
+ * class itself, so any change to one of them invalidates it. The first start saves the image, later starts
+ * hard-link (or copy) it into the data folders instead of bootstrapping Cassandra from scratch.
+ */
+class GoldenImage {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GoldenImage.class);
+
+    private static final String DATA = "data";
+    private static final String COMMIT_LOG = "commitlog";
+    private static final String SAVED_CACHES = "saved_caches";
+    private static final String DESCRIPTOR_FILE = "golden-image.properties";
+    private static final String BOOTSTRAP_MILLIS = "bootstrapMillis";
+    private static final String SNAPSHOT_PREFIX = "apollon-golden-image-";
+    private static final String TMP_SUFFIX = ".tmp-";
+    private static final String MANIFEST_FILE = "manifest.json";
+    private static final String SCHEMA_FILE = "schema.cql";
+
+    /**
+     * Images of other configurations not restored for a week are deleted when a new image is saved
+     */
+    static final long STALE_IMAGE_AGE_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    private static final Set<String> NON_CONFIG_PARAMETERS = new HashSet<>(Arrays.asList(SHUTDOWN_HOOK,
+            CLEAN_CASSANDRA_DATA_FILES, CLEAN_CASSANDRA_CONFIG_FILE, USE_GOLDEN_IMAGE, GOLDEN_IMAGE_FOLDER,
+            GOLDEN_IMAGE_RESTORED, CASSANDRA_THRIFT_PORT, CASSANDRA_CQL_PORT, CASSANDRA_STORAGE_PORT,
+            CASSANDRA_STORAGE_SSL_PORT, CASSANDRA_JMX_PORT, WORKER_ID));
+
+    private final String key;
+    private final File imageFolder;
+    private boolean restored = false;
+
+    private GoldenImage(String key, File imageFolder) {
+        this.key = key;
+        this.imageFolder = imageFolder;
+    }
+
+    static GoldenImage of(TypedMap parameters) {
+        final String key = computeKey(parameters);
+        final File rootFolder = new File(parameters.<String>getTyped(GOLDEN_IMAGE_FOLDER));
+        return new GoldenImage(key, new File(rootFolder, key));
+    }
+
+    boolean isAvailable() {
+        return new File(imageFolder, DESCRIPTOR_FILE).isFile();
+    }
+
+    boolean isRestored() {
+        return restored;
+    }
+
+    /**
+     * Replace the content of the data, commit log and saved caches folders by the golden image
+     */
+    void restore(TypedMap parameters) {
+        LOGGER.info("Restoring embedded Cassandra golden image '{}' from '{}'", key, imageFolder.getAbsolutePath());
+        try {
+            copyFolder(new File(imageFolder, DATA), new File(parameters.<String>getTyped(DATA_FILE_FOLDER)), true);
+            copyFolder(new File(imageFolder, COMMIT_LOG), new File(parameters.<String>getTyped(COMMIT_LOG_FOLDER)), true);
+            copyFolder(new File(imageFolder, SAVED_CACHES), new File(parameters.<String>getTyped(SAVED_CACHES_FOLDER)), true);
+        } catch (IOException e) {
+            throw new ApollonException(String.format("Cannot restore golden image from %s", imageFolder.getAbsolutePath()), e);
+        }
+        if (!new File(imageFolder, DESCRIPTOR_FILE).setLastModified(System.currentTimeMillis())) {
+            LOGGER.debug("Cannot record the use of golden image '{}'", key);
+        }
+        restored = true;
+    }
+
+    /**
+     * Save the golden image after a full bootstrap or report the startup time it saved
+     *
+     * @param parameters      embedded Cassandra server parameters
+     * @param startupMillis   time spent to start the server and execute the startup scripts
+     */
+    void complete(TypedMap parameters, long startupMillis) {
+        if (restored) {
+            final long bootstrapMillis = readBootstrapMillis();
+            LOGGER.info("Embedded Cassandra started from golden image '{}' in {} ms instead of {} ms, saved {} ms",
+                    key, startupMillis, bootstrapMillis, Math.max(0L, bootstrapMillis - startupMillis));
+        } else {
+            save(parameters, startupMillis);
+        }
+    }
+
+    private void save(TypedMap parameters, long bootstrapMillis) {
+        LOGGER.info("Saving embedded Cassandra golden image '{}' to '{}'", key, imageFolder.getAbsolutePath());
+        final String snapshotName = SNAPSHOT_PREFIX + UUID.randomUUID();
+        final File rootFolder = imageFolder.getParentFile();
+        final File tmpFolder = new File(rootFolder, key + TMP_SUFFIX + UUID.randomUUID());
+        try {
+            snapshotAllTables(snapshotName);
+            FileUtils.forceMkdir(tmpFolder);
+            copySnapshot(new File(parameters.<String>getTyped(DATA_FILE_FOLDER)), snapshotName, new File(tmpFolder, DATA));
+            // All memtables have been flushed by the snapshot, the commit log segments do not need to be replayed
+            FileUtils.forceMkdir(new File(tmpFolder, COMMIT_LOG));
+            copyFolder(new File(parameters.<String>getTyped(SAVED_CACHES_FOLDER)), new File(tmpFolder, SAVED_CACHES), false);
+
+            final Properties descriptor = new Properties();
+            descriptor.setProperty(BOOTSTRAP_MILLIS, String.valueOf(bootstrapMillis));
+            try (OutputStream out = new FileOutputStream(new File(tmpFolder, DESCRIPTOR_FILE))) {
+                descriptor.store(out, "Apollon embedded Cassandra golden image");
+            }
+
+            deleteStaleImages(rootFolder, key, STALE_IMAGE_AGE_MILLIS);
+            Files.move(tmpFolder.toPath(), imageFolder.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot save golden image to {}", imageFolder.getAbsolutePath(), e);
+            FileUtils.deleteQuietly(tmpFolder);
+        } finally {
+            clearSnapshots(snapshotName);
+        }
+    }
+
+    /**
+     * Flush and hard-link the SSTables of every table, so that compactions cannot rewrite or delete them while
+     * they are copied
+     */
+    private static void snapshotAllTables(String snapshotName) {
+        for (Keyspace keyspace : Keyspace.all()) {
+            for (ColumnFamilyStore cfs : keyspace.getColumnFamilyStores()) {
+                cfs.snapshot(snapshotName);
+            }
+        }
+    }
+
+    private static void clearSnapshots(String snapshotName) {
+        for (Keyspace keyspace : Keyspace.all()) {
+            for (ColumnFamilyStore cfs : keyspace.getColumnFamilyStores()) {
+                cfs.clearSnapshot(snapshotName);
+            }
+        }
+    }
+
+    /**
+     * Copy the snapshot files of the data folder to the image, at the place of the live SSTables:
+     * <em>&lt;keyspace&gt;/&lt;table&gt;/snapshots/&lt;snapshot&gt;/&lt;file&gt;</em> is copied to
+     * <em>&lt;keyspace&gt;/&lt;table&gt;/&lt;file&gt;</em>, secondary index folders included
+     */
+    static void copySnapshot(File dataFolder, String snapshotName, File target) throws IOException {
+        if (!dataFolder.isDirectory()) {
+            return;
+        }
+        final Path dataPath = dataFolder.toPath();
+        final Path targetPath = target.toPath();
+        Files.createDirectories(targetPath);
+        Files.walkFileTree(dataPath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                final Path relativePath = dataPath.relativize(file);
+                final int snapshotIndex = snapshotIndex(relativePath, snapshotName);
+                if (snapshotIndex < 0 || isSnapshotDescriptor(relativePath, snapshotIndex)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                Path targetFile = targetPath;
+                for (int i = 0; i < relativePath.getNameCount(); i++) {
+                    if (i != snapshotIndex && i != snapshotIndex + 1) {
+                        targetFile = targetFile.resolve(relativePath.getName(i).toString());
+                    }
+                }
+                Files.createDirectories(targetFile.getParent());
+                Files.copy(file, targetFile, StandardCopyOption.REPLACE_EXISTING);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * @return the index of the <em>snapshots</em> folder followed by the snapshot name in the path, or -1
+     */
+    private static int snapshotIndex(Path relativePath, String snapshotName) {
+        for (int i = 0; i < relativePath.getNameCount() - 2; i++) {
+            if (Directories.SNAPSHOT_SUBDIR.equals(relativePath.getName(i).toString())
+                    && snapshotName.equals(relativePath.getName(i + 1).toString())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isSnapshotDescriptor(Path relativePath, int snapshotIndex) {
+        final String fileName = relativePath.getFileName().toString();
+        return relativePath.getNameCount() == snapshotIndex + 3
+                && (MANIFEST_FILE.equals(fileName) || SCHEMA_FILE.equals(fileName));
+    }
+
+    /**
+     * Delete the images of other configurations which have not been used for a while. Other projects or
+     * configurations may share the root folder, so recently used images and the images being saved are kept
+     *
+     * @param rootFolder   root folder of the golden images
+     * @param currentKey   key of the current image, never deleted
+     * @param maxAgeMillis age of the last use above which an image is stale
+     */
+    static void deleteStaleImages(File rootFolder, String currentKey, long maxAgeMillis) {
+        final File[] images = rootFolder.listFiles(File::isDirectory);
+        if (images == null) {
+            return;
+        }
+        final long cutoff = System.currentTimeMillis() - maxAgeMillis;
+        for (File image : images) {
+            if (!image.getName().startsWith(currentKey) && lastUse(image) < cutoff) {
+                LOGGER.debug("Deleting stale golden image '{}'", image.getAbsolutePath());
+                FileUtils.deleteQuietly(image);
+            }
+        }
+    }
+
+    /**
+     * The descriptor is touched each time the image is restored
+     */
+    private static long lastUse(File image) {
+        final File descriptor = new File(image, DESCRIPTOR_FILE);
+        return descriptor.isFile() ? descriptor.lastModified() : image.lastModified();
+    }
+
+    private long readBootstrapMillis() {
+        final Properties descriptor = new Properties();
+        try (InputStream in = new FileInputStream(new File(imageFolder, DESCRIPTOR_FILE))) {
+            descriptor.load(in);
+        } catch (IOException e) {
+            LOGGER.debug("Cannot read golden image descriptor", e);
+        }
+        return Long.parseLong(descriptor.getProperty(BOOTSTRAP_MILLIS, "0"));
+    }
+
+    /**
+     * Copy the source folder into the target folder, using hard links when allowed and supported
+     * by the file system. SSTables are immutable so linking them is safe.
+     */
+    private static void copyFolder(File source, File target, boolean link) throws IOException {
+        if (!source.isDirectory()) {
+            return;
+        }
+        final Path sourcePath = source.toPath();
+        final Path targetPath = target.toPath();
+        Files.walkFileTree(sourcePath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(targetPath.resolve(sourcePath.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                final Path targetFile = targetPath.resolve(sourcePath.relativize(file).toString());
+                try {
+                    if (link) {
+                        Files.createLink(targetFile, file);
+                    } else {
+                        Files.copy(file, targetFile, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } catch (UnsupportedOperationException | FileSystemException e) {
+                    Files.copy(file, targetFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+        });
+    }
+
+    static String computeKey(TypedMap parameters) {
+        final Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString(FBUtilities.getReleaseVersionString(), StandardCharsets.UTF_8);
+        hasher.putBytes(readClassBytes(ApollonCassandraConfig.class));
+
+        new TreeMap<>(parameters).forEach((name, value) -> {
+            if (!NON_CONFIG_PARAMETERS.contains(name)) {
+                hasher.putString(name, StandardCharsets.UTF_8).putString(canonicalValue(value), StandardCharsets.UTF_8);
+            }
+        });
+
+        final List<String> scriptLocations = parameters.getTypedOr(SCRIPT_LOCATIONS, new ArrayList<>());
+        scriptLocations.forEach(location -> hasher.putBytes(readResource(location)));
+        final Map<String, Map<String, Object>> scriptTemplates = parameters.getTypedOr(SCRIPT_TEMPLATES, new HashMap<>());
+        new TreeMap<>(scriptTemplates).keySet().forEach(location -> hasher.putBytes(readResource(location)));
+        final Map<String, String> bulkFixtures = parameters.getTypedOr(BULK_FIXTURES, new HashMap<>());
+        bulkFixtures.values().forEach(location -> hasher.putBytes(readResource(location)));
+
+        return hasher.hash().toString();
+    }
+
+    private static String canonicalValue(Object value) {
+        if (value instanceof Map) {
+            final StringBuilder builder = new StringBuilder("{");
+            new TreeMap<>((Map<?, ?>) value).forEach((k, v) -> builder.append(k).append('=').append(canonicalValue(v)).append(','));
+            return builder.append('}').toString();
+        }
+        if (value instanceof String) {
+            // The parallel test workers share the golden images
+            return WorkerIsolation.sharedFolder((String) value);
+        }
+        return String.valueOf(value);
+    }
+
+    private static byte[] readClassBytes(Class<?> clazz) {
+        try (InputStream in = clazz.getResourceAsStream(clazz.getSimpleName() + ".class")) {
+            return in == null ? new byte[0] : IOUtils.toByteArray(in);
+        } catch (IOException e) {
+            throw new ApollonException(String.format("Cannot read class %s", clazz.getName()), e);
+        }
+    }
+
+    private static byte[] readResource(String location) {
+        try (InputStream in = GoldenImage.class.getResourceAsStream("/" + location)) {
+            ValidationHelper.validateNotNull(in, "Cannot find CQL script file at location '%s'", location);
+            return IOUtils.toByteArray(in);
+        } catch (IOException e) {
+            throw new ApollonException(String.format("Cannot read CQL script file at location %s", location), e);
+        }
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import io.github.johannesroesch.apollon.exception.ApollonException;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static io.github.johannesroesch.apollon.embedded.CassandraEmbeddedConfigParameters.*;
+
+/**
+ * Local Cassandra cluster of several nodes running in the current JVM, in the style of the Cassandra in-JVM dtests.
+ * <br/>
+ * Each node loads Cassandra and Apollon in its own isolated class loader, so that the static state of Cassandra
+ * (DatabaseDescriptor, StorageService, Schema...) is not shared between the nodes. Like for {@link LocalCluster},
+ * the nodes are bound to the loopback addresses <em>127.0.0.1</em> ... <em>127.0.0.N</em> and have their own
+ * data folders, but there is a single JVM to start and to size.
+ * <br/>
+ * The nodes start in parallel, each one in its own thread. Their configuration is passed to
+ * {@link ApollonCassandraConfig} through system properties, which are global to the JVM, so a node only holds
+ * the configuration lock until it has read its configuration. The JMX registration of the nodes is disabled
+ * since the platform MBean server is shared too.
+ * <br/>
+ * A stopped node is drained, its executors are shut down, its threads are joined and its remaining MBeans are
+ * unregistered, so that several clusters can be started one after the other in the same test JVM.
+ * <br/>
+ * <pre class="code"><code class="java">
+ *
+ * try (InJvmCluster cluster = CassandraEmbeddedServerBuilder.builder()
+ *         .withScript("schema.cql")
+ *         .buildInJvmCluster(3)) {
+ *     CqlSession session = cluster.getNativeSession();
+ *     ...
+ * }
+ * </code></pre>
+ */
+public class InJvmCluster implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InJvmCluster.class);
+
+    static final String DISABLE_MBEAN_REGISTRATION_PROPERTY = "org.apache.cassandra.disable_mbean_registration";
+    static final long NODE_THREADS_JOIN_TIMEOUT_MILLIS = 10_000L;
+    private static final Object CLUSTER_STARTUP_LOCK = new Object();
+
+    private final List<String> addresses;
+    private final List<URLClassLoader> nodes = new ArrayList<>();
+    private final LocalCluster.ClusterPorts ports;
+    private final Thread.UncaughtExceptionHandler defaultUncaughtExceptionHandler = Thread.getDefaultUncaughtExceptionHandler();
+    private CqlSession session;
+
+    private InJvmCluster(List<String> addresses, LocalCluster.ClusterPorts ports) {
+        this.addresses = addresses;
+        this.ports = ports;
+    }
+
+    static InJvmCluster start(TypedMap originalParameters, int nodeCount) {
+        final TypedMap parameters = CassandraEmbeddedConfigParameters.mergeWithDefaultParameters(originalParameters);
+        final List<String> addresses = LocalCluster.loopbackAddresses(nodeCount);
+        final LocalCluster.ClusterPorts ports = LocalCluster.ClusterPorts.reserve(addresses);
+
+        final InJvmCluster cluster = new InJvmCluster(addresses, ports);
+        try {
+            final File clusterFolder = LocalCluster.clusterFolder(parameters);
+            final List<String[]> nodeArguments = new ArrayList<>();
+            for (int i = 0; i < nodeCount; i++) {
+                final File nodeFolder = LocalCluster.nodeFolder(clusterFolder, i);
+                LocalCluster.createNodeFolders(nodeFolder);
+                nodeArguments.add(LocalCluster.nodeArguments(parameters, addresses, i, nodeFolder, ports).toArray(new String[0]));
+            }
+            final long start = System.nanoTime();
+            final long timeoutMillis = parameters.<Number>getTyped(STARTUP_TIMEOUT_IN_MILLIS).longValue() * 2;
+            cluster.startNodes(classPath(), nodeArguments, timeoutMillis);
+            LOGGER.info("In-JVM cluster of {} nodes started on {} in {} ms", nodeCount, addresses,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            cluster.session = LocalCluster.createSession(cluster.getContactPoints());
+            LocalCluster.awaitClusterReady(cluster.session, nodeCount, timeoutMillis);
+            LocalCluster.initializeSchema(cluster.session, parameters, nodeCount);
+            return cluster;
+        } catch (RuntimeException e) {
+            cluster.close();
+            throw e;
+        }
+    }
+
+    private void startNodes(URL[] classPath, List<String[]> nodeArguments, long timeoutMillis) {
+        final ExecutorService executor = Executors.newFixedThreadPool(nodeArguments.size(), new DefaultThreadFactory("Apollon-in-jvm-cluster"));
+        final Semaphore configurationLock = new Semaphore(1);
+        synchronized (CLUSTER_STARTUP_LOCK) {
+            final String previousMBeanRegistration = System.getProperty(DISABLE_MBEAN_REGISTRATION_PROPERTY);
+            try {
+                System.setProperty(DISABLE_MBEAN_REGISTRATION_PROPERTY, "true");
+                final List<CompletableFuture<Void>> startups = new ArrayList<>();
+                for (int i = 0; i < nodeArguments.size(); i++) {
+                    // The parent is the extension/platform class loader: every class of the class path is loaded again for the node
+                    final URLClassLoader classLoader = new URLClassLoader(classPath, ClassLoader.getSystemClassLoader().getParent());
+                    nodes.add(classLoader);
+                    final String address = addresses.get(i);
+                    final String[] arguments = nodeArguments.get(i);
+                    startups.add(CompletableFuture.runAsync(() -> startNode(address, classLoader, arguments, configurationLock), executor));
+                }
+                awaitStartups(startups, timeoutMillis);
+            } finally {
+                executor.shutdownNow();
+                if (previousMBeanRegistration == null) {
+                    System.clearProperty(DISABLE_MBEAN_REGISTRATION_PROPERTY);
+                } else {
+                    System.setProperty(DISABLE_MBEAN_REGISTRATION_PROPERTY, previousMBeanRegistration);
+                }
+            }
+        }
+    }
+
+    private static void startNode(String address, ClassLoader classLoader, String[] arguments, Semaphore configurationLock) {
+        try {
+            configurationLock.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApollonException(String.format("Interrupted before starting node %s of the in-JVM cluster", address), e);
+        }
+        final AtomicBoolean configured = new AtomicBoolean();
+        final Runnable releaseConfigurationLock = () -> {
+            if (configured.compareAndSet(false, true)) {
+                configurationLock.release();
+            }
+        };
+        final Thread currentThread = Thread.currentThread();
+        final ClassLoader previousClassLoader = currentThread.getContextClassLoader();
+        LOGGER.info("Starting node {} of the in-JVM cluster", address);
+        try {
+            // The threads created by the node inherit its class loader as context class loader
+            currentThread.setContextClassLoader(classLoader);
+            invokeNode(classLoader, "start", new Class<?>[]{String[].class, Runnable.class}, arguments, releaseConfigurationLock);
+        } catch (RuntimeException e) {
+            throw new ApollonException(String.format("Cannot start node %s of the in-JVM cluster", address), e);
+        } finally {
+            releaseConfigurationLock.run();
+            currentThread.setContextClassLoader(previousClassLoader);
+        }
+    }
+
+    private static void awaitStartups(List<CompletableFuture<Void>> startups, long timeoutMillis) {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            for (CompletableFuture<Void> startup : startups) {
+                startup.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof ApollonException ? (ApollonException) e.getCause() : new ApollonException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new ApollonException(String.format("The in-JVM cluster did not start within %s ms", timeoutMillis), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApollonException("Interrupted while starting the in-JVM cluster", e);
+        }
+    }
+
+    private static void invokeNode(ClassLoader classLoader, String methodName, Class<?>[] parameterTypes, Object... arguments) {
+        try {
+            final Class<?> nodeClass = Class.forName(LocalClusterNode.class.getName(), true, classLoader);
+            final Method method = nodeClass.getMethod(methodName, parameterTypes);
+            // The node class is in the same package but not in the same runtime package: it is loaded by another class loader
+            method.setAccessible(true);
+            method.invoke(null, arguments);
+        } catch (InvocationTargetException e) {
+            throw new ApollonException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new ApollonException(e);
+        }
+    }
+
+    private static URL[] classPath() {
+        final List<URL> urls = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            try {
+                urls.add(new File(entry).toURI().toURL());
+            } catch (MalformedURLException e) {
+                throw new ApollonException(String.format("Invalid class path entry %s", entry), e);
+            }
+        }
+        return urls.toArray(new URL[0]);
+    }
+
+    private static void closeQuietly(URLClassLoader classLoader) {
+        try {
+            classLoader.close();
+        } catch (IOException e) {
+            LOGGER.debug("Cannot close the class loader of a node", e);
+        }
+    }
+
+    /**
+     * @return driver session load-balancing the requests across all the nodes
+     */
+    public CqlSession getNativeSession() {
+        return session;
+    }
+
+    /**
+     * @return native transport address of each node
+     */
+    public List<InetSocketAddress> getContactPoints() {
+        return addresses.stream().map(address -> new InetSocketAddress(address, ports.cql)).collect(Collectors.toList());
+    }
+
+    public int getNodeCount() {
+        return nodes.size();
+    }
+
+    /**
+     * @return the class loaders of the running nodes
+     */
+    List<ClassLoader> getNodeClassLoaders() {
+        return nodes.stream().filter(node -> node != null).collect(Collectors.toList());
+    }
+
+    /**
+     * Stop a node, e.g. to test the consistency levels with a node down
+     *
+     * @param index index of the node, from 0 to nodeCount - 1
+     */
+    public void stopNode(int index) {
+        final URLClassLoader node = nodes.get(index);
+        if (node != null) {
+            nodes.set(index, null);
+            stop(node);
+        }
+    }
+
+    private void stop(URLClassLoader node) {
+        try {
+            invokeNode(node, "stopInJvm", new Class<?>[0]);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Cannot stop a node of the in-JVM cluster", e);
+        } finally {
+            unregisterMBeans(node);
+            restoreDefaultUncaughtExceptionHandler(node);
+            joinThreads(node);
+            closeQuietly(node);
+        }
+    }
+
+    /**
+     * @return the MBeans registered by the node despite the disabled registration, e.g. by the logging framework
+     */
+    static List<ObjectName> nodeMBeans(ClassLoader node) {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final List<ObjectName> mbeans = new ArrayList<>();
+        for (ObjectName name : server.queryNames(null, null)) {
+            try {
+                if (server.getClassLoaderFor(name) == node) {
+                    mbeans.add(name);
+                }
+            } catch (JMException e) {
+                // Unregistered in the meantime
+            }
+        }
+        return mbeans;
+    }
+
+    private static void unregisterMBeans(ClassLoader node) {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : nodeMBeans(node)) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                LOGGER.debug("Cannot unregister MBean {} of a node", name, e);
+            }
+        }
+    }
+
+    /**
+     * Cassandra installs its own default handler, which would keep the classes of the node alive
+     */
+    private void restoreDefaultUncaughtExceptionHandler(ClassLoader node) {
+        final Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+        if (handler != null && handler.getClass().getClassLoader() == node) {
+            Thread.setDefaultUncaughtExceptionHandler(defaultUncaughtExceptionHandler);
+        }
+    }
+
+    /**
+     * @return the live threads created by the node, which inherited its class loader as context class loader
+     */
+    static List<Thread> nodeThreads(ClassLoader node) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread != Thread.currentThread() && thread.getContextClassLoader() == node)
+                .collect(Collectors.toList());
+    }
+
+    private static void joinThreads(ClassLoader node) {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(NODE_THREADS_JOIN_TIMEOUT_MILLIS);
+        final List<Thread> threads = new ArrayList<>();
+        for (Thread thread : nodeThreads(node)) {
+            if (isSystemThread(thread)) {
+                // Shared by the whole JVM, e.g. the process reaper, it only has to forget the node
+                thread.setContextClassLoader(ClassLoader.getSystemClassLoader());
+            } else {
+                thread.interrupt();
+                threads.add(thread);
+            }
+        }
+        try {
+            for (Thread thread : threads) {
+                final long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis > 0) {
+                    thread.join(remainingMillis);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        final List<String> aliveThreads = threads.stream().filter(Thread::isAlive).map(Thread::getName).collect(Collectors.toList());
+        if (!aliveThreads.isEmpty()) {
+            LOGGER.warn("{} thread(s) of a stopped node of the in-JVM cluster are still running: {}", aliveThreads.size(), aliveThreads);
+        }
+    }
+
+    private static boolean isSystemThread(Thread thread) {
+        final ThreadGroup group = thread.getThreadGroup();
+        return group != null && group.getParent() == null;
+    }
+
+    @Override
+    public void close() {
+        if (session != null) {
+            session.close();
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            stopNode(i);
+        }
+        ports.close();
+    }
+}
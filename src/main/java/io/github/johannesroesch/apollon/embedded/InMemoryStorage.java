@@ -0,0 +1,202 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.marshal.AbstractType;
+import org.apache.cassandra.schema.KeyspaceMetadata;
+import org.apache.cassandra.schema.KeyspaceParams;
+import org.apache.cassandra.schema.Schema;
+import org.apache.cassandra.schema.SchemaChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memtable-only storage of the embedded Cassandra server, for tests that never need durability.
+ * <br/>
+ * <ul>
+ *     <li>no write goes to the commitlog: the system keyspaces are created without durable writes and
+ *     every other keyspace, including the ones created later, is switched to non durable writes in memory.
+ *     The schema tables still show the declared <em>durable_writes</em></li>
+ *     <li>the system and schema tables are not flushed on schema changes (<em>cassandra.unsafesystem</em>)</li>
+ *     <li>memtables are not flushed until they reach the memory ceiling, both on heap and off heap.
+ *     Above the ceiling, the largest memtable is flushed to disk as usual, so the ceiling bounds the memory
+ *     used by the test data but not the data itself</li>
+ * </ul>
+ * The data is lost when the server stops. Explicit flushes, e.g. for snapshots or the golden image, still write
+ * SSTables. Optionally, the default folders are placed on <em>/dev/shm</em> by {@link RamDiskFolders} so that these writes stay
+ * in memory too.
+ */
+final class InMemoryStorage {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryStorage.class);
+
+    static final String UNSAFE_SYSTEM_PROPERTY = "cassandra.unsafesystem";
+
+    /**
+     * Flush only when the memtables use 99% of the memory ceiling, the maximum accepted by Cassandra
+     */
+    static final float MEMTABLE_CLEANUP_THRESHOLD = 0.99f;
+
+    private static final SchemaChangeListener NON_DURABLE_KEYSPACES = new NonDurableKeyspaces();
+
+    private InMemoryStorage() {
+    }
+
+    /**
+     * @param memtableCeilingInMb memory ceiling of the memtables
+     * @return the Cassandra settings of the in-memory storage
+     */
+    static Map<String, Object> configOverrides(int memtableCeilingInMb) {
+        ValidationHelper.validateTrue(memtableCeilingInMb > 0, "The memtable memory ceiling '%s' should be positive", memtableCeilingInMb);
+        final Map<String, Object> overrides = new LinkedHashMap<>();
+        overrides.put("memtable_heap_space_in_mb", memtableCeilingInMb);
+        overrides.put("memtable_offheap_space_in_mb", memtableCeilingInMb);
+        overrides.put("memtable_cleanup_threshold", MEMTABLE_CLEANUP_THRESHOLD);
+        return overrides;
+    }
+
+    /**
+     * To call before the daemon starts, so that the system keyspaces are created without durable writes
+     */
+    static void configureSystemKeyspaces() {
+        System.setProperty(UNSAFE_SYSTEM_PROPERTY, "true");
+        KeyspaceParams.DEFAULT_LOCAL_DURABLE_WRITES = false;
+    }
+
+    /**
+     * To call once the daemon is started: disable the durable writes of the existing and future keyspaces.
+     * Calling it again has no other effect
+     */
+    static void install() {
+        Schema.instance.getKeyspaces().forEach(InMemoryStorage::disableDurableWrites);
+        Schema.instance.unregisterListener(NON_DURABLE_KEYSPACES);
+        Schema.instance.registerListener(NON_DURABLE_KEYSPACES);
+        LOGGER.info("Embedded Cassandra in-memory storage enabled, writes skip the commitlog");
+    }
+
+    static void disableDurableWrites(String keyspaceName) {
+        final Keyspace keyspace = Schema.instance.getKeyspaceInstance(keyspaceName);
+        if (keyspace == null) {
+            return;
+        }
+        final KeyspaceMetadata metadata = keyspace.getMetadata();
+        if (metadata.params.durableWrites) {
+            LOGGER.debug("Disabling durable writes of keyspace {}", keyspaceName);
+            keyspace.setMetadata(metadata.withSwapped(new KeyspaceParams(false, metadata.params.replication)));
+        }
+    }
+
+    /**
+     * Every schema change of a keyspace, whatever its kind, reloads the keyspace metadata from the schema tables,
+     * with their declared durable writes: switch them off again after each one
+     */
+    private static final class NonDurableKeyspaces extends SchemaChangeListener {
+        @Override
+        public void onCreateKeyspace(String keyspace) {
+            disableDurableWrites(keyspace);
+        }
+
+        @Override
+        public void onCreateTable(String keyspace, String table) {
+            disableDurableWrites(keyspace);
+        }
+
+        @Override
+        public void onCreateView(String keyspace, String view) {
+            disableDurableWrites(keyspace);
+        }
+
+        @Override
+        public void onCreateType(String keyspace, String type) {
+            disableDurableWrites(keyspace);
+        }
+
+        @Override
+        public void onCreateFunction(String keyspace, String function, List<AbstractType<?>> argumentTypes) {
+            disableDurableWrites(keyspace);
+        }
+
+        @Override
+        public void onCreateAggregate(String keyspace, String aggregate, List<AbstractType<?>> argumentTypes) {
+            disableDurableWrites(keyspace);
+        }
+
+        @Override
+        public void onAlterKeyspace(String keyspace) {
+            disableDurableWrites(keyspace);
+        }
+
+        @Override
+        public void onAlterTable(String keyspace, String table, boolean affectsStatements) {
+            disableDurableWrites(keyspace);
+        }
+
+        @Override
+        public void onAlterView(String keyspace, String view, boolean affectsStatements) {
+            disableDurableWrites(keyspace);
+        }
+
+        @Override
+        public void onAlterType(String keyspace, String type) {
+            disableDurableWrites(keyspace);
+        }
+
+        @Override
+        public void onAlterFunction(String keyspace, String function, List<AbstractType<?>> argumentTypes) {
+            disableDurableWrites(keyspace);
+        }
+
+        @Override
+        public void onAlterAggregate(String keyspace, String aggregate, List<AbstractType<?>> argumentTypes) {
+            disableDurableWrites(keyspace);
+        }
+
+        @Override
+        public void onDropKeyspace(String keyspace) {
+            // No keyspace instance left to switch
+        }
+
+        @Override
+        public void onDropTable(String keyspace, String table) {
+            disableDurableWrites(keyspace);
+        }
+
+        @Override
+        public void onDropView(String keyspace, String view) {
+            disableDurableWrites(keyspace);
+        }
+
+        @Override
+        public void onDropType(String keyspace, String type) {
+            disableDurableWrites(keyspace);
+        }
+
+        @Override
+        public void onDropFunction(String keyspace, String function, List<AbstractType<?>> argumentTypes) {
+            disableDurableWrites(keyspace);
+        }
+
+        @Override
+        public void onDropAggregate(String keyspace, String aggregate, List<AbstractType<?>> argumentTypes) {
+            disableDurableWrites(keyspace);
+        }
+    }
+}
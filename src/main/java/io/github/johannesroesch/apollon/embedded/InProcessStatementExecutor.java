@@ -0,0 +1,228 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import io.github.johannesroesch.apollon.exception.ApollonException;
+import org.apache.cassandra.cql3.CQLStatement;
+import org.apache.cassandra.cql3.QueryOptions;
+import org.apache.cassandra.cql3.QueryProcessor;
+import org.apache.cassandra.cql3.statements.UseStatement;
+import org.apache.cassandra.db.ConsistencyLevel;
+import org.apache.cassandra.exceptions.InvalidRequestException;
+import org.apache.cassandra.schema.KeyspaceMetadata;
+import org.apache.cassandra.schema.Keyspaces;
+import org.apache.cassandra.schema.MigrationManager;
+import org.apache.cassandra.schema.Schema;
+import org.apache.cassandra.schema.SchemaConstants;
+import org.apache.cassandra.schema.SchemaTransformation;
+import org.apache.cassandra.service.ClientState;
+import org.apache.cassandra.service.QueryState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Execute the statements of a script directly in the embedded Cassandra server running in this JVM.
+ * <br/>
+ * Each statement is parsed and handed to the query handler of the server, {@link QueryProcessor} or the
+ * {@link DirtyTableTracker}, without going through the driver, the native protocol and the loopback network.
+ * The statements are executed synchronously, in order, with consistency ONE. <em>USE</em> statements change the
+ * keyspace of the next statements and {@link #getKeyspace()} returns the keyspace at the end of the script, for the
+ * caller to switch its session to it, as when the script is executed by a session.
+ * <br/>
+ * With the bulk schema application, consecutive schema statements (CREATE/ALTER/DROP KEYSPACE, TABLE, TYPE,
+ * INDEX, ...) are not applied one by one: they are collected and applied to the local schema as one combined
+ * schema change, with a single schema migration, when the next statement of another kind is executed or when
+ * the script is completed. Each statement still sees the schema changes of the previous ones. As when they are
+ * executed one by one, the statements modifying a system or virtual keyspace are rejected.
+ */
+final class InProcessStatementExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InProcessStatementExecutor.class);
+
+    private final String scriptLocation;
+    private final QueryState queryState;
+    private final boolean bulkApplySchema;
+    private final List<PendingSchemaChange> pendingSchemaChanges = new ArrayList<>();
+    private int appliedSchemaChanges = 0;
+
+    /**
+     * @param scriptLocation location of the executed script, for the error messages
+     * @param keyspace       keyspace of the unqualified tables, or null
+     */
+    InProcessStatementExecutor(String scriptLocation, String keyspace) {
+        this(scriptLocation, keyspace, false);
+    }
+
+    /**
+     * @param scriptLocation  location of the executed script, for the error messages
+     * @param keyspace        keyspace of the unqualified tables, or null
+     * @param bulkApplySchema whether to apply the consecutive schema statements as one schema change
+     */
+    InProcessStatementExecutor(String scriptLocation, String keyspace, boolean bulkApplySchema) {
+        ValidationHelper.validateTrue(isAvailable(), "In-process execution requires the embedded Cassandra server to be started in this JVM");
+        this.scriptLocation = scriptLocation;
+        this.queryState = new QueryState(keyspace == null ? ClientState.forInternalCalls() : ClientState.forInternalCalls(keyspace));
+        this.bulkApplySchema = bulkApplySchema;
+    }
+
+    static boolean isAvailable() {
+        return CassandraEmbeddedServer.embeddedServerStarted;
+    }
+
+    void execute(String query, int line) {
+        final CQLStatement statement = prepare(query, line);
+        if (bulkApplySchema && statement instanceof SchemaTransformation) {
+            validateModifiableKeyspace(statement, line);
+            pendingSchemaChanges.add(new PendingSchemaChange((SchemaTransformation) statement, line));
+            return;
+        }
+
+        final QueryOptions options = QueryOptions.forInternalCalls(ConsistencyLevel.ONE, Collections.emptyList());
+        try {
+            if (statement instanceof UseStatement) {
+                // The authorization of USE requires a logged in user, which internal calls do not have
+                statement.executeLocally(queryState, options);
+            } else {
+                ClientState.getCQLQueryHandler().process(statement, queryState, options, Collections.emptyMap(), System.nanoTime());
+            }
+        } catch (RuntimeException e) {
+            throw error(line, e);
+        }
+    }
+
+    /**
+     * Any statement other than a schema statement, e.g. USE or INSERT, may depend on the pending schema changes:
+     * they are applied before it is prepared. The schema statements themselves are prepared without the schema
+     */
+    private CQLStatement prepare(String query, int line) {
+        if (!pendingSchemaChanges.isEmpty()) {
+            final CQLStatement statement = prepareAgainstCurrentSchema(query);
+            if (statement instanceof SchemaTransformation) {
+                return statement;
+            }
+            applyPendingSchemaChanges();
+        }
+        try {
+            return QueryProcessor.getStatement(query, queryState.getClientState());
+        } catch (RuntimeException e) {
+            throw error(line, e);
+        }
+    }
+
+    private CQLStatement prepareAgainstCurrentSchema(String query) {
+        try {
+            return QueryProcessor.getStatement(query, queryState.getClientState());
+        } catch (RuntimeException e) {
+            // e.g. an INSERT into a table to be created by the pending schema changes
+            return null;
+        }
+    }
+
+    /**
+     * @return the keyspace of the unqualified tables after the statements executed so far, or null
+     */
+    String getKeyspace() {
+        return queryState.getClientState().getRawKeyspace();
+    }
+
+    /**
+     * Apply the pending schema changes at the end of the script
+     *
+     * @return the number of schema statements applied in bulk since the creation of the executor
+     */
+    int complete() {
+        applyPendingSchemaChanges();
+        return appliedSchemaChanges;
+    }
+
+    private void applyPendingSchemaChanges() {
+        if (pendingSchemaChanges.isEmpty()) {
+            return;
+        }
+        final List<PendingSchemaChange> schemaChanges = new ArrayList<>(pendingSchemaChanges);
+        pendingSchemaChanges.clear();
+
+        final long start = System.nanoTime();
+        try {
+            MigrationManager.announce(keyspaces -> {
+                Keyspaces transformed = keyspaces;
+                for (PendingSchemaChange schemaChange : schemaChanges) {
+                    transformed = schemaChange.apply(transformed);
+                }
+                return transformed;
+            }, false);
+        } catch (ApollonException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new ApollonException(String.format("Error applying the schema changes of script '%s' from line %s: %s",
+                    scriptLocation, schemaChanges.get(0).line, e.getMessage()), e);
+        }
+        appliedSchemaChanges += schemaChanges.size();
+
+        if (LOGGER.isDebugEnabled()) {
+            final long elapsedNanos = System.nanoTime() - start;
+            final long changesPerSecond = elapsedNanos > 0 ? schemaChanges.size() * TimeUnit.SECONDS.toNanos(1) / elapsedNanos : schemaChanges.size();
+            LOGGER.debug("Applied {} schema statement(s) of script '{}' as one schema change in {} ms ({} DDL/s)",
+                    schemaChanges.size(), scriptLocation, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), changesPerSecond);
+        }
+    }
+
+    /**
+     * The checks of the schema statements executed one by one, which the bulk application bypasses
+     */
+    private void validateModifiableKeyspace(CQLStatement statement, int line) {
+        final String keyspace = statement.getAuditLogContext().keyspace;
+        if (keyspace == null) {
+            return;
+        }
+        final KeyspaceMetadata keyspaceMetadata = Schema.instance.getKeyspaceMetadata(keyspace);
+        if (SchemaConstants.isLocalSystemKeyspace(keyspace)) {
+            throw error(line, new InvalidRequestException(String.format("System keyspace '%s' is not user-modifiable", keyspace)));
+        } else if (keyspaceMetadata != null && keyspaceMetadata.isVirtual()) {
+            throw error(line, new InvalidRequestException(String.format("Virtual keyspace '%s' is not user-modifiable", keyspace)));
+        } else if (!SchemaConstants.isValidName(keyspace)) {
+            throw error(line, new InvalidRequestException(String.format("Keyspace name must not be empty, more than %d characters long, "
+                    + "or contain non-alphanumeric-underscore characters (got '%s')", SchemaConstants.NAME_LENGTH, keyspace)));
+        }
+    }
+
+    private ApollonException error(int line, RuntimeException e) {
+        return new ApollonException(String.format("Error executing script '%s', line %s: %s", scriptLocation, line, e.getMessage()), e);
+    }
+
+    private final class PendingSchemaChange {
+        private final SchemaTransformation transformation;
+        private final int line;
+
+        private PendingSchemaChange(SchemaTransformation transformation, int line) {
+            this.transformation = transformation;
+            this.line = line;
+        }
+
+        private Keyspaces apply(Keyspaces keyspaces) {
+            try {
+                return transformation.apply(keyspaces);
+            } catch (RuntimeException e) {
+                throw error(line, e);
+            }
+        }
+    }
+}
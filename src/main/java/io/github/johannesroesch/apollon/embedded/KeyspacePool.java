@@ -0,0 +1,204 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import io.github.johannesroesch.apollon.exception.ApollonException;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static io.github.johannesroesch.apollon.embedded.CassandraEmbeddedConfigParameters.*;
+
+/**
+ * Pool of identical keyspaces to run tests in parallel against a single embedded Cassandra server.
+ * <br/>
+ * The keyspaces are created in the background and initialized with the startup scripts and templates.
+ * Scripts should refer to the target keyspace with the <strong>${keyspace}</strong> variable, e.g.
+ * <em>CREATE TABLE ${keyspace}.users(...)</em>. A returned keyspace is truncated in the background, then seeded
+ * again with the DML statements (INSERT, UPDATE, DELETE, BATCH) of the scripts and templates, before being leased
+ * again, so that every lease starts with the same data.
+ * <br/>
+ * <pre class="code"><code class="java">
+ *
+ * try (KeyspacePool.LeasedKeyspace keyspace = server.getKeyspacePool().lease()) {
+ *     session.execute("INSERT INTO " + keyspace.getName() + ".users(id, name) VALUES(1, 'john')");
+ *     ...
+ * }
+ * </code></pre>
+ */
+public class KeyspacePool {
+    public static final String KEYSPACE_VARIABLE = "keyspace";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeyspacePool.class);
+
+    private final CqlSession session;
+    private final BlockingQueue<String> availableKeyspaces = new LinkedBlockingQueue<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("Apollon-keyspace-pool", true));
+    private final CompletableFuture<Void> creation;
+    private final ScriptExecutor scriptExecutor;
+    private final List<String> scriptLocations;
+    private final Map<String, Map<String, Object>> scriptTemplates;
+
+    KeyspacePool(CqlSession session, TypedMap parameters) {
+        this.session = session;
+        this.scriptExecutor = AchillesInitializer.newScriptExecutor(session, parameters);
+        this.scriptLocations = parameters.getTypedOr(SCRIPT_LOCATIONS, new ArrayList<>());
+        this.scriptTemplates = parameters.getTypedOr(SCRIPT_TEMPLATES, new HashMap<>());
+        final int size = parameters.getTyped(KEYSPACE_POOL_SIZE);
+        final String prefix = parameters.getTyped(DEFAULT_KEYSPACE_NAME);
+        final List<String> keyspaceNames = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            keyspaceNames.add(AchillesInitializer.validateKeyspaceName(prefix + "_" + i));
+        }
+        this.creation = CompletableFuture.runAsync(() -> keyspaceNames.forEach(name -> createKeyspace(name, parameters)), executor);
+    }
+
+    /**
+     * Lease a clean keyspace, waiting until one is available
+     *
+     * @return the leased keyspace, to be closed to return it to the pool
+     */
+    public LeasedKeyspace lease() {
+        try {
+            return new LeasedKeyspace(take());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while leasing a keyspace", e);
+        }
+    }
+
+    /**
+     * Lease a clean keyspace, waiting at most the given timeout
+     *
+     * @param timeout maximum time to wait for a keyspace
+     * @param unit    unit of the timeout
+     * @return the leased keyspace, to be closed to return it to the pool
+     */
+    public LeasedKeyspace lease(long timeout, TimeUnit unit) {
+        try {
+            final String keyspaceName = availableKeyspaces.poll(timeout, unit);
+            checkCreation();
+            ValidationHelper.validateNotNull(keyspaceName, "No keyspace available in the pool after %s %s", timeout, unit);
+            return new LeasedKeyspace(keyspaceName);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while leasing a keyspace", e);
+        }
+    }
+
+    private String take() throws InterruptedException {
+        String keyspaceName = null;
+        while (keyspaceName == null) {
+            checkCreation();
+            keyspaceName = availableKeyspaces.poll(100, TimeUnit.MILLISECONDS);
+        }
+        return keyspaceName;
+    }
+
+    private void checkCreation() {
+        if (creation.isCompletedExceptionally()) {
+            try {
+                creation.join();
+            } catch (CompletionException e) {
+                throw new ApollonException("Cannot create the keyspaces of the pool", e.getCause());
+            }
+        }
+    }
+
+    private void createKeyspace(String keyspaceName, TypedMap parameters) {
+        LOGGER.debug("Creating pooled keyspace {}", keyspaceName);
+        AchillesInitializer.createKeyspaceIfNeeded(session, keyspaceName, parameters.getTyped(KEYSPACE_DURABLE_WRITE));
+
+        final Map<String, Object> keyspaceVariable = Collections.singletonMap(KEYSPACE_VARIABLE, keyspaceName);
+        scriptLocations.forEach(location -> scriptExecutor.executeScriptTemplate(location, keyspaceVariable));
+        scriptTemplates.forEach((location, values) -> scriptExecutor.executeScriptTemplate(location, templateVariables(values, keyspaceName)));
+        availableKeyspaces.add(keyspaceName);
+    }
+
+    private void recycle(String keyspaceName) {
+        CompletableFuture.runAsync(() -> reset(keyspaceName), executor)
+                .whenComplete((ignored, throwable) -> {
+                    if (throwable != null) {
+                        LOGGER.error("Cannot truncate and seed pooled keyspace {}, removing it from the pool", keyspaceName, throwable);
+                    } else {
+                        availableKeyspaces.add(keyspaceName);
+                    }
+                });
+    }
+
+    private void reset(String keyspaceName) {
+        truncateAllTables(keyspaceName);
+        seedAgain(keyspaceName);
+    }
+
+    private void truncateAllTables(String keyspaceName) {
+        final SimpleStatement selectTables = SimpleStatement.newInstance("SELECT table_name FROM system_schema.tables WHERE keyspace_name = ?", keyspaceName);
+        final List<CompletableFuture<?>> truncations = new ArrayList<>();
+        for (Row row : session.execute(selectTables)) {
+            final String table = CqlIdentifier.fromInternal(row.getString("table_name")).asCql(true);
+            final String keyspace = CqlIdentifier.fromInternal(keyspaceName).asCql(true);
+            truncations.add(session.executeAsync("TRUNCATE " + keyspace + "." + table).toCompletableFuture());
+        }
+        CompletableFuture.allOf(truncations.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    /**
+     * The truncation also removed the rows inserted by the scripts: execute their DML statements again
+     */
+    private void seedAgain(String keyspaceName) {
+        final Map<String, Object> keyspaceVariable = Collections.singletonMap(KEYSPACE_VARIABLE, keyspaceName);
+        scriptLocations.forEach(location -> scriptExecutor.executeDataStatements(location, keyspaceVariable));
+        scriptTemplates.forEach((location, values) -> scriptExecutor.executeDataStatements(location, templateVariables(values, keyspaceName)));
+    }
+
+    private static Map<String, Object> templateVariables(Map<String, Object> values, String keyspaceName) {
+        final Map<String, Object> variables = new HashMap<>(values);
+        variables.put(KEYSPACE_VARIABLE, keyspaceName);
+        return variables;
+    }
+
+    /**
+     * A keyspace leased from the pool. Closing it returns the keyspace to the pool
+     */
+    public final class LeasedKeyspace implements AutoCloseable {
+        private final String name;
+        private boolean released = false;
+
+        private LeasedKeyspace(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                recycle(name);
+            }
+        }
+    }
+}
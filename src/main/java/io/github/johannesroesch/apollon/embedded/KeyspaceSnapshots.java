@@ -0,0 +1,118 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import io.github.johannesroesch.apollon.exception.ApollonException;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Directories;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.schema.Schema;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Named snapshots of a keyspace of the embedded server, backed by Cassandra hard-link snapshots.
+ * <br/>
+ * Restoring a snapshot truncates each table and hard-links the SSTables of the snapshot back into the
+ * table, so its duration depends on the number of SSTables, not on the size of the data.
+ */
+final class KeyspaceSnapshots {
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeyspaceSnapshots.class);
+
+    private static final String MANIFEST_FILE = "manifest.json";
+    private static final String SCHEMA_FILE = "schema.cql";
+
+    private KeyspaceSnapshots() {
+    }
+
+    /**
+     * Flush and snapshot all the tables of the keyspace, replacing any previous snapshot with the same name
+     */
+    static void snapshot(String keyspaceName, String snapshotName) {
+        for (ColumnFamilyStore store : columnFamilyStores(keyspaceName)) {
+            if (store.snapshotExists(snapshotName)) {
+                store.clearSnapshot(snapshotName);
+            }
+            store.snapshot(snapshotName);
+        }
+        LOGGER.debug("Snapshot {} of keyspace {} taken", snapshotName, keyspaceName);
+    }
+
+    static boolean exists(String keyspaceName, String snapshotName) {
+        return Schema.instance.getKeyspaceMetadata(keyspaceName) != null
+                && columnFamilyStores(keyspaceName).stream().anyMatch(store -> store.snapshotExists(snapshotName));
+    }
+
+    /**
+     * Truncate all the tables of the keyspace and restore the SSTables of the snapshot
+     */
+    static void restore(String keyspaceName, String snapshotName) {
+        ValidationHelper.validateTrue(exists(keyspaceName, snapshotName), "Cannot find snapshot %s of keyspace %s", snapshotName, keyspaceName);
+        final long start = System.nanoTime();
+        for (ColumnFamilyStore store : columnFamilyStores(keyspaceName)) {
+            store.truncateBlocking();
+            for (File tableFolder : store.getDirectories().getCFDirectories()) {
+                final File snapshotFolder = Directories.getSnapshotDirectory(tableFolder, snapshotName);
+                if (snapshotFolder.isDirectory()) {
+                    restoreFolder(store, snapshotFolder);
+                }
+            }
+        }
+        LOGGER.debug("Snapshot {} of keyspace {} restored in {} ms", snapshotName, keyspaceName,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * The import moves the SSTables into the table folder, so they are hard-linked into a staging folder first
+     * to keep the snapshot intact. The staging folder lives next to the snapshot to stay on the same file system
+     */
+    private static void restoreFolder(ColumnFamilyStore store, File snapshotFolder) {
+        final File stagingFolder = new File(snapshotFolder.getParentFile(), snapshotFolder.getName() + "-restore-" + System.nanoTime());
+        try {
+            FileUtils.forceMkdir(stagingFolder);
+            final File[] files = snapshotFolder.listFiles(file -> file.isFile()
+                    && !MANIFEST_FILE.equals(file.getName()) && !SCHEMA_FILE.equals(file.getName()));
+            if (files == null || files.length == 0) {
+                return;
+            }
+            for (File file : files) {
+                Files.createLink(new File(stagingFolder, file.getName()).toPath(), file.toPath());
+            }
+            final List<String> failedFolders = store.importNewSSTables(Collections.singleton(stagingFolder.getAbsolutePath()),
+                    false, false, false, false, true, false);
+            ValidationHelper.validateTrue(failedFolders.isEmpty(), "Cannot restore the SSTables of %s.%s from %s",
+                    store.keyspace.getName(), store.name, failedFolders);
+        } catch (IOException e) {
+            throw new ApollonException(String.format("Cannot restore snapshot folder %s", snapshotFolder), e);
+        } finally {
+            FileUtils.deleteQuietly(stagingFolder);
+        }
+    }
+
+    private static Collection<ColumnFamilyStore> columnFamilyStores(String keyspaceName) {
+        ValidationHelper.validateNotNull(Schema.instance.getKeyspaceMetadata(keyspaceName), "Cannot find keyspace %s", keyspaceName);
+        return Keyspace.open(keyspaceName).getColumnFamilyStores();
+    }
+}
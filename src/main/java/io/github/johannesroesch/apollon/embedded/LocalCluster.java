@@ -0,0 +1,374 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.metadata.NodeState;
+import io.github.johannesroesch.apollon.exception.ApollonException;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static io.github.johannesroesch.apollon.embedded.CassandraEmbeddedConfigParameters.*;
+
+/**
+ * Local Cassandra cluster of several nodes, each running in its own child JVM and bound to its own
+ * loopback address: <em>127.0.0.1</em>, <em>127.0.0.2</em>, ... <em>127.0.0.N</em>.
+ * <br/>
+ * All the nodes are seeds and start in parallel, with their own data folders under
+ * <em>&lt;data folder parent&gt;/cluster/nodeX</em> and their own JMX port. They share the native
+ * transport and storage ports, each node listening on its own address.
+ * <br/>
+ * Linux routes the whole 127.0.0.0/8 range to the loopback interface. On macOS the aliases must be created first,
+ * e.g. <em>sudo ifconfig lo0 alias 127.0.0.2 up</em>
+ * <br/>
+ * <pre class="code"><code class="java">
+ *
+ * try (LocalCluster cluster = CassandraEmbeddedServerBuilder.builder()
+ *         .withScript("schema.cql")
+ *         .buildLocalCluster(3)) {
+ *     CqlSession session = cluster.getNativeSession();
+ *     ...
+ * }
+ * </code></pre>
+ */
+public class LocalCluster implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalCluster.class);
+
+    static final String LOCAL_DATACENTER = "datacenter1";
+    private static final String LOOPBACK_PREFIX = "127.0.0.";
+    private static final int MAX_NODES = 254;
+    private static final List<String> NODE_FOLDERS = Arrays.asList("data", "commitlog", "saved_caches", "hints", "cdc_raw");
+    private static final List<String> NODE_JVM_OPTIONS = Arrays.asList("-Xms256m", "-Xmx512m", "-XX:+UseG1GC");
+
+    private final List<String> addresses;
+    private final List<Process> nodes = new ArrayList<>();
+    private final Thread shutdownHook = new Thread(this::destroyNodes, "Apollon-local-cluster-shutdown");
+    private final ClusterPorts ports;
+    private CqlSession session;
+
+    private LocalCluster(List<String> addresses, ClusterPorts ports) {
+        this.addresses = addresses;
+        this.ports = ports;
+    }
+
+    static LocalCluster start(TypedMap originalParameters, int nodeCount) {
+        final TypedMap parameters = CassandraEmbeddedConfigParameters.mergeWithDefaultParameters(originalParameters);
+        final List<String> addresses = loopbackAddresses(nodeCount);
+        final ClusterPorts ports = ClusterPorts.reserve(addresses);
+
+        final LocalCluster cluster = new LocalCluster(addresses, ports);
+        Runtime.getRuntime().addShutdownHook(cluster.shutdownHook);
+        try {
+            final File clusterFolder = clusterFolder(parameters);
+            for (int i = 0; i < nodeCount; i++) {
+                final File nodeFolder = nodeFolder(clusterFolder, i);
+                cluster.nodes.add(startNode(addresses.get(i), nodeFolder, nodeArguments(parameters, addresses, i, nodeFolder, ports)));
+            }
+            final long timeoutMillis = parameters.<Number>getTyped(STARTUP_TIMEOUT_IN_MILLIS).longValue() * 2;
+            cluster.awaitNodes(timeoutMillis, clusterFolder);
+            cluster.session = createSession(cluster.getContactPoints());
+            awaitClusterReady(cluster.session, nodeCount, timeoutMillis);
+            initializeSchema(cluster.session, parameters, nodeCount);
+            return cluster;
+        } catch (RuntimeException e) {
+            cluster.close();
+            throw e;
+        }
+    }
+
+    private static Process startNode(String address, File nodeFolder, List<String> arguments) {
+        final List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(NODE_JVM_OPTIONS);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(LocalClusterNode.class.getName());
+        command.addAll(arguments);
+
+        try {
+            createNodeFolders(nodeFolder);
+            final File logFile = new File(nodeFolder, "node.log");
+            LOGGER.info("Starting node {} of the local cluster, logs in {}", address, logFile.getAbsolutePath());
+            return new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(logFile)
+                    .start();
+        } catch (IOException e) {
+            throw new ApollonException(String.format("Cannot start node %s of the local cluster", address), e);
+        }
+    }
+
+    static List<String> loopbackAddresses(int nodeCount) {
+        ValidationHelper.validateTrue(nodeCount > 0 && nodeCount <= MAX_NODES, "The number of nodes should be between 1 and %s", MAX_NODES);
+        final List<String> addresses = IntStream.rangeClosed(1, nodeCount).mapToObj(i -> LOOPBACK_PREFIX + i).collect(Collectors.toList());
+        addresses.forEach(LocalCluster::validateAddress);
+        return addresses;
+    }
+
+    static File clusterFolder(TypedMap parameters) {
+        return new File(new File(parameters.<String>getTyped(DATA_FILE_FOLDER)).getAbsoluteFile().getParentFile(), "cluster");
+    }
+
+    static File nodeFolder(File clusterFolder, int index) {
+        return new File(clusterFolder, "node" + (index + 1));
+    }
+
+    /**
+     * Create the data folders of a node, which must exist since they are configured explicitly
+     */
+    static void createNodeFolders(File nodeFolder) {
+        for (String folder : NODE_FOLDERS) {
+            try {
+                FileUtils.forceMkdir(new File(nodeFolder, folder));
+            } catch (IOException e) {
+                throw new ApollonException(String.format("Cannot create folder %s of node folder %s", folder, nodeFolder), e);
+            }
+        }
+    }
+
+    /**
+     * @return the parameters of a node, as <em>name=value</em> arguments parsed by {@link LocalClusterNode#parseArguments(List)}
+     */
+    static List<String> nodeArguments(TypedMap parameters, List<String> addresses, int index, File nodeFolder, ClusterPorts ports) {
+        final String address = addresses.get(index);
+        final Map<String, Object> nodeParameters = new LinkedHashMap<>();
+        nodeParameters.put(LISTEN_ADDRESS, address);
+        nodeParameters.put(RPC_ADDRESS, address);
+        nodeParameters.put(BROADCAST_ADDRESS, address);
+        nodeParameters.put(BROADCAST_RPC_ADDRESS, address);
+        nodeParameters.put(SEEDS, String.join(",", addresses));
+        nodeParameters.put(ENDPOINT_SNITCH, parameters.getTypedOr(ENDPOINT_SNITCH, "SimpleSnitch"));
+        nodeParameters.put(CASSANDRA_CQL_PORT, ports.cql);
+        nodeParameters.put(CASSANDRA_STORAGE_PORT, ports.storage);
+        nodeParameters.put(CASSANDRA_STORAGE_SSL_PORT, ports.storageSsl);
+        nodeParameters.put(CASSANDRA_JMX_PORT, ports.jmx(index));
+        nodeParameters.put(DATA_FILE_FOLDER, new File(nodeFolder, "data").getPath());
+        nodeParameters.put(COMMIT_LOG_FOLDER, new File(nodeFolder, "commitlog").getPath());
+        nodeParameters.put(SAVED_CACHES_FOLDER, new File(nodeFolder, "saved_caches").getPath());
+        nodeParameters.put(HINTS_FOLDER, new File(nodeFolder, "hints").getPath());
+        nodeParameters.put(CDC_RAW_FOLDER, new File(nodeFolder, "cdc_raw").getPath());
+        nodeParameters.put(CLEAN_CASSANDRA_DATA_FILES, true);
+        nodeParameters.put(STARTUP_TIMEOUT_IN_MILLIS, parameters.<Number>getTyped(STARTUP_TIMEOUT_IN_MILLIS).longValue());
+        if (parameters.containsKey(CONFIG_PROFILE)) {
+            nodeParameters.put(CONFIG_PROFILE, parameters.<ConfigProfile>getTyped(CONFIG_PROFILE).name());
+        }
+        final Map<String, Object> configOverrides = parameters.getTypedOr(CONFIG_OVERRIDES, new HashMap<>());
+        configOverrides.forEach((setting, value) -> nodeParameters.put(CONFIG_OVERRIDES + "." + setting, value));
+        return nodeParameters.entrySet().stream().map(entry -> entry.getKey() + "=" + entry.getValue()).collect(Collectors.toList());
+    }
+
+    private void awaitNodes(long timeoutMillis, File clusterFolder) {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (int i = 0; i < nodes.size(); i++) {
+            final String address = addresses.get(i);
+            while (!isListening(address)) {
+                if (!nodes.get(i).isAlive()) {
+                    throw new ApollonException(String.format("Node %s of the local cluster exited, see %s", address,
+                            new File(nodeFolder(clusterFolder, i), "node.log").getAbsolutePath()));
+                }
+                if (System.nanoTime() > deadline) {
+                    throw new ApollonException(String.format("Node %s of the local cluster did not start within %s ms", address, timeoutMillis));
+                }
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ApollonException("Interrupted while waiting for the local cluster", e);
+                }
+            }
+        }
+        LOGGER.info("Local cluster of {} nodes started on {}", nodes.size(), addresses);
+    }
+
+    private boolean isListening(String address) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(address, ports.cql), 100);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static CqlSession createSession(List<InetSocketAddress> contactPoints) {
+        return CqlSession.builder()
+                .addContactPoints(contactPoints)
+                .withLocalDatacenter(LOCAL_DATACENTER)
+                .build();
+    }
+
+    /**
+     * Wait until the driver sees all the nodes up and the nodes agree on the schema. A node listening on
+     * its native transport port may not have joined the ring yet, the default keyspace would then be
+     * created with fewer replicas than expected
+     */
+    static void awaitClusterReady(CqlSession session, int nodeCount, long timeoutMillis) {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            final long upNodes = session.getMetadata().getNodes().values().stream()
+                    .filter(node -> node.getState() == NodeState.UP)
+                    .count();
+            if (upNodes >= nodeCount && session.checkSchemaAgreement()) {
+                return;
+            }
+            if (System.nanoTime() > deadline) {
+                throw new ApollonException(String.format("Only %s of the %s nodes of the local cluster are up or the nodes " +
+                        "do not agree on the schema after %s ms", upNodes, nodeCount, timeoutMillis));
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ApollonException("Interrupted while waiting for the local cluster", e);
+            }
+        }
+    }
+
+    /**
+     * Create the default keyspace, replicated on up to 3 nodes, then execute the startup scripts
+     */
+    static void initializeSchema(CqlSession session, TypedMap parameters, int nodeCount) {
+        final String keyspaceName = AchillesInitializer.validateKeyspaceName(parameters.getTyped(DEFAULT_KEYSPACE_NAME));
+        AchillesInitializer.createKeyspaceIfNeeded(session, keyspaceName, parameters.getTyped(KEYSPACE_DURABLE_WRITE), Math.min(3, nodeCount));
+
+        // The nodes run in other JVMs, an embedded server of this JVM must not receive the scripts
+        final ScriptExecutor scriptExecutor = AchillesInitializer.newScriptExecutor(session, parameters).executeInProcess(false);
+        final List<String> scriptLocations = parameters.getTypedOr(SCRIPT_LOCATIONS, new ArrayList<>());
+        scriptLocations.forEach(scriptExecutor::executeScript);
+        final Map<String, Map<String, Object>> scriptTemplates = parameters.getTypedOr(SCRIPT_TEMPLATES, new HashMap<>());
+        scriptTemplates.forEach(scriptExecutor::executeScriptTemplate);
+    }
+
+    private static void validateAddress(String address) {
+        try (ServerSocket socket = new ServerSocket()) {
+            socket.bind(new InetSocketAddress(InetAddress.getByName(address), 0));
+        } catch (IOException e) {
+            throw new ApollonException(String.format("Cannot bind to %s, the loopback alias may be missing " +
+                    "(e.g. 'sudo ifconfig lo0 alias %s up' on macOS)", address, address), e);
+        }
+    }
+
+    /**
+     * Ports of the cluster, reserved across JVMs in one block. The native transport and storage ports are shared
+     * by all the nodes since each node listens on its own address, the JMX port is specific to each node
+     */
+    static final class ClusterPorts implements AutoCloseable {
+        private final PortBlock block;
+        final int cql;
+        final int storage;
+        final int storageSsl;
+
+        private ClusterPorts(PortBlock block) {
+            this.block = block;
+            this.cql = block.get(0);
+            this.storage = block.get(1);
+            this.storageSsl = block.get(2);
+        }
+
+        static ClusterPorts reserve(List<String> addresses) {
+            return new ClusterPorts(PortFinder.reserveBlock(3 + addresses.size(), addresses));
+        }
+
+        int jmx(int nodeIndex) {
+            return block.get(3 + nodeIndex);
+        }
+
+        @Override
+        public void close() {
+            block.close();
+        }
+    }
+
+    /**
+     * @return driver session load-balancing the requests across all the nodes
+     */
+    public CqlSession getNativeSession() {
+        return session;
+    }
+
+    /**
+     * @return native transport address of each node
+     */
+    public List<InetSocketAddress> getContactPoints() {
+        return addresses.stream().map(address -> new InetSocketAddress(address, ports.cql)).collect(Collectors.toList());
+    }
+
+    public int getNodeCount() {
+        return nodes.size();
+    }
+
+    /**
+     * Kill a node, e.g. to test the consistency levels with a node down
+     *
+     * @param index index of the node, from 0 to nodeCount - 1
+     */
+    public void stopNode(int index) {
+        final Process node = nodes.get(index);
+        node.destroy();
+        try {
+            node.waitFor(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (session != null) {
+            session.close();
+        }
+        destroyNodes();
+        ports.close();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // JVM already shutting down
+        }
+    }
+
+    private void destroyNodes() {
+        for (Process node : nodes) {
+            try {
+                // Closing the standard input lets the node stop itself
+                node.getOutputStream().close();
+            } catch (IOException e) {
+                LOGGER.debug("Cannot close the standard input of a node", e);
+            }
+        }
+        for (Process node : nodes) {
+            try {
+                if (!node.waitFor(30, TimeUnit.SECONDS)) {
+                    node.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                node.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
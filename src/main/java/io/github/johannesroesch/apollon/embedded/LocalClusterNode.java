@@ -0,0 +1,180 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import org.apache.cassandra.batchlog.BatchlogManager;
+import org.apache.cassandra.concurrent.ScheduledExecutors;
+import org.apache.cassandra.concurrent.SharedExecutorPool;
+import org.apache.cassandra.concurrent.Stage;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Memtable;
+import org.apache.cassandra.gms.Gossiper;
+import org.apache.cassandra.index.SecondaryIndexManager;
+import org.apache.cassandra.io.sstable.IndexSummaryManager;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.service.PendingRangeCalculatorService;
+import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.utils.concurrent.Ref;
+import org.apache.cassandra.utils.memory.BufferPools;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.johannesroesch.apollon.embedded.CassandraEmbeddedConfigParameters.*;
+
+/**
+ * Entry point of a node of a {@link LocalCluster}, running in its own JVM, or of an {@link InJvmCluster},
+ * running in its own class loader.
+ * <br/>
+ * The parameters are passed as <em>name=value</em> arguments. A forked node stops as soon as its standard input
+ * is closed, i.e. when the parent JVM stops the cluster or dies.
+ */
+final class LocalClusterNode {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalClusterNode.class);
+
+    private static final Set<String> INTEGER_PARAMETERS = new HashSet<>(Arrays.asList(CASSANDRA_THRIFT_PORT,
+            CASSANDRA_CQL_PORT, CASSANDRA_STORAGE_PORT, CASSANDRA_STORAGE_SSL_PORT, CASSANDRA_JMX_PORT));
+
+    private static final CassandraShutDownHook SHUTDOWN_HOOK = new CassandraShutDownHook();
+    private static final long EXECUTOR_SHUTDOWN_TIMEOUT_SECONDS = 10L;
+
+    private LocalClusterNode() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        start(args);
+
+        while (System.in.read() >= 0) {
+            // Wait for the parent JVM to close the standard input
+        }
+        stop();
+        System.exit(0);
+    }
+
+    /**
+     * Start the node and return once its native transport accepts connections.
+     * Called reflectively by {@link InJvmCluster}, hence the plain <em>String[]</em> shared by all the class loaders
+     */
+    public static void start(String[] args) {
+        final TypedMap parameters = parseArguments(Arrays.asList(args));
+        parameters.put(CassandraEmbeddedConfigParameters.SHUTDOWN_HOOK, SHUTDOWN_HOOK);
+        ServerStarter.CASSANDRA_EMBEDDED.startServer(null, CassandraEmbeddedConfigParameters.mergeWithDefaultParameters(parameters));
+        LOGGER.info("Node {} of the local cluster started", parameters.<String>getTyped(LISTEN_ADDRESS));
+    }
+
+    /**
+     * Start the node of an {@link InJvmCluster}
+     *
+     * @param configurationLoaded called once the node has read its configuration from the system properties,
+     *                            which can then be set for the next node
+     */
+    public static void start(String[] args, Runnable configurationLoaded) {
+        ApollonCassandraConfig.setLoadListener(configurationLoaded);
+        start(args);
+    }
+
+    public static void stop() {
+        LOGGER.info("Stopping node of the local cluster");
+        SHUTDOWN_HOOK.shutDownNow();
+    }
+
+    /**
+     * Stop the node of an {@link InJvmCluster}. The JVM keeps running, so the node is drained and the executors of
+     * Cassandra are shut down too, for the threads of the node to end and its class loader to be collected
+     */
+    public static void stopInJvm() {
+        stop();
+        StorageService.instance.removeShutdownHook();
+        shutdownQuietly("drain", StorageService.instance::drain);
+        shutdownQuietly("batchlog", () -> BatchlogManager.instance.shutdownAndWait(EXECUTOR_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        shutdownQuietly("pending ranges", () -> PendingRangeCalculatorService.instance.shutdownAndWait(EXECUTOR_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        shutdownQuietly("stages", () -> Stage.shutdownAndWait(EXECUTOR_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        shutdownQuietly("shared pool", () -> SharedExecutorPool.SHARED.shutdownAndWait(EXECUTOR_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        shutdownQuietly("gossip", LocalClusterNode::shutdownGossipTasks);
+        shutdownQuietly("tables", () -> ColumnFamilyStore.shutdownExecutorsAndWait(EXECUTOR_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        shutdownQuietly("secondary indexes", () -> SecondaryIndexManager.shutdownAndWait(EXECUTOR_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        shutdownQuietly("index summaries", () -> IndexSummaryManager.instance.shutdownAndWait(EXECUTOR_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        shutdownQuietly("memtable pool", () -> Memtable.MEMORY_POOL.shutdownAndWait(EXECUTOR_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        shutdownQuietly("sstables", () -> SSTableReader.shutdownBlocking(EXECUTOR_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        shutdownQuietly("scheduled tasks", () -> ScheduledExecutors.shutdownAndWait(EXECUTOR_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        shutdownQuietly("reference reaper", () -> Ref.shutdownReferenceReaper(EXECUTOR_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        shutdownQuietly("buffer pools", () -> BufferPools.shutdownLocalCleaner(EXECUTOR_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        shutdownQuietly("data folder trash", DataFolderTrash::shutdown);
+    }
+
+    /**
+     * {@link Gossiper#stop()} only cancels the gossip task, the executor running it has no shutdown method
+     */
+    private static void shutdownGossipTasks() throws ReflectiveOperationException, InterruptedException {
+        final Field executorField = Gossiper.class.getDeclaredField("executor");
+        executorField.setAccessible(true);
+        final ExecutorService executor = (ExecutorService) executorField.get(null);
+        executor.shutdown();
+        executor.awaitTermination(EXECUTOR_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static void shutdownQuietly(String name, ShutdownAction action) {
+        try {
+            action.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted while shutting down the {} of the node", name);
+        } catch (Exception e) {
+            LOGGER.warn("Cannot shut down the {} of the node", name, e);
+        }
+    }
+
+    static TypedMap parseArguments(List<String> args) {
+        final TypedMap parameters = new TypedMap();
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            ValidationHelper.validateTrue(separator > 0, "Invalid node argument '%s', expected name=value", arg);
+            final String name = arg.substring(0, separator);
+            final String value = arg.substring(separator + 1);
+            if (INTEGER_PARAMETERS.contains(name)) {
+                parameters.put(name, Integer.parseInt(value));
+            } else if (STARTUP_TIMEOUT_IN_MILLIS.equals(name)) {
+                parameters.put(name, Long.parseLong(value));
+            } else if (CLEAN_CASSANDRA_DATA_FILES.equals(name)) {
+                parameters.put(name, Boolean.parseBoolean(value));
+            } else if (CONFIG_PROFILE.equals(name)) {
+                parameters.put(name, ConfigProfile.valueOf(value));
+            } else if (name.startsWith(CONFIG_OVERRIDES + ".")) {
+                final Map<String, Object> configOverrides = parameters.getTypedOr(CONFIG_OVERRIDES, new HashMap<>());
+                configOverrides.put(name.substring(CONFIG_OVERRIDES.length() + 1), value);
+                parameters.put(CONFIG_OVERRIDES, configOverrides);
+            } else {
+                parameters.put(name, value);
+            }
+        }
+        return parameters;
+    }
+
+    private interface ShutdownAction {
+        void run() throws Exception;
+    }
+}
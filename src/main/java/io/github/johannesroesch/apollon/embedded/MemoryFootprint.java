@@ -0,0 +1,144 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Memory and threads used by the JVM, measured once the embedded Cassandra server has started.
+ * <br/>
+ * It includes the test code running in the same JVM. Direct memory covers the JDK direct buffers and the
+ * Netty direct buffers, but not the native memory allocated by Cassandra for off-heap memtables,
+ * which is only part of the resident set size.
+ */
+public class MemoryFootprint {
+
+    private static final Path PROC_STATUS = Paths.get("/proc/self/status");
+    private static final long MB = 1024L * 1024L;
+
+    private final long heapUsedBytes;
+    private final long heapCommittedBytes;
+    private final long nonHeapUsedBytes;
+    private final long directMemoryUsedBytes;
+    private final long residentSetSizeBytes;
+    private final int threadCount;
+
+    MemoryFootprint(long heapUsedBytes, long heapCommittedBytes, long nonHeapUsedBytes, long directMemoryUsedBytes,
+                    long residentSetSizeBytes, int threadCount) {
+        this.heapUsedBytes = heapUsedBytes;
+        this.heapCommittedBytes = heapCommittedBytes;
+        this.nonHeapUsedBytes = nonHeapUsedBytes;
+        this.directMemoryUsedBytes = directMemoryUsedBytes;
+        this.residentSetSizeBytes = residentSetSizeBytes;
+        this.threadCount = threadCount;
+    }
+
+    static MemoryFootprint measure() {
+        final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        final MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+        return new MemoryFootprint(heap.getUsed(), heap.getCommitted(), nonHeap.getUsed(), directMemoryUsed(),
+                residentSetSize(), ManagementFactory.getThreadMXBean().getThreadCount());
+    }
+
+    private static long directMemoryUsed() {
+        long used = 0L;
+        final List<BufferPoolMXBean> bufferPools = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class);
+        for (BufferPoolMXBean bufferPool : bufferPools) {
+            if ("direct".equals(bufferPool.getName())) {
+                used += bufferPool.getMemoryUsed();
+            }
+        }
+        // Netty allocates its buffers without cleaner, they are not part of the JDK buffer pool
+        return used + Math.max(0L, PlatformDependent.usedDirectMemory());
+    }
+
+    /**
+     * @return the resident set size of the process, or -1 when not available (non Linux systems)
+     */
+    static long residentSetSize() {
+        if (!Files.isReadable(PROC_STATUS)) {
+            return -1L;
+        }
+        try {
+            return parseResidentSetSize(Files.readAllLines(PROC_STATUS, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            return -1L;
+        }
+    }
+
+    static long parseResidentSetSize(List<String> procStatusLines) {
+        for (String line : procStatusLines) {
+            if (line.startsWith("VmRSS:")) {
+                final String[] tokens = line.substring("VmRSS:".length()).trim().split("\\s+");
+                return Long.parseLong(tokens[0]) * 1024L;
+            }
+        }
+        return -1L;
+    }
+
+    public long getHeapUsedBytes() {
+        return heapUsedBytes;
+    }
+
+    public long getHeapCommittedBytes() {
+        return heapCommittedBytes;
+    }
+
+    public long getNonHeapUsedBytes() {
+        return nonHeapUsedBytes;
+    }
+
+    public long getDirectMemoryUsedBytes() {
+        return directMemoryUsedBytes;
+    }
+
+    /**
+     * @return the resident set size of the process, or -1 when not available (non Linux systems)
+     */
+    public long getResidentSetSizeBytes() {
+        return residentSetSizeBytes;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * @return single line report, e.g. <em>heapUsed=182MB heapCommitted=256MB nonHeapUsed=95MB direct=12MB rss=410MB threads=87</em>
+     */
+    public String toLogLine() {
+        return "heapUsed=" + heapUsedBytes / MB + "MB heapCommitted=" + heapCommittedBytes / MB
+                + "MB nonHeapUsed=" + nonHeapUsedBytes / MB + "MB direct=" + directMemoryUsedBytes / MB
+                + "MB rss=" + (residentSetSizeBytes < 0 ? "n/a" : residentSetSizeBytes / MB + "MB")
+                + " threads=" + threadCount;
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryFootprint{" + toLogLine() + "}";
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide cache of the parsed startup scripts, keyed by script location, content hash and template values.
+ * <br/>
+ * It also remembers the scripts already applied successfully to a keyspace of the running server, so that
+ * a new {@link CassandraEmbeddedServer} instantiation with the same scripts neither parses nor executes them again.
+ * <br/>
+ * The parsed scripts are bounded by the total length of their statements, the least recently used ones being
+ * evicted and parsed again when needed.
+ */
+final class ParsedScriptCache {
+
+    /**
+     * Maximum total length of the cached statements, in characters
+     */
+    static final long MAX_CACHED_STATEMENTS_LENGTH = 16L * 1024L * 1024L;
+
+    private static final Cache<String, List<ParsedStatement>> PARSED_SCRIPTS = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_CACHED_STATEMENTS_LENGTH)
+            .weigher((String key, List<ParsedStatement> statements) -> length(statements))
+            .build();
+    private static final Set<String> APPLIED_SCRIPTS = ConcurrentHashMap.newKeySet();
+
+    private ParsedScriptCache() {
+    }
+
+    /**
+     * @param location  the location of the script in the class path
+     * @param content   the content of the script
+     * @param variables template values
+     * @param parser    parser of the script, called only if the script is not cached yet
+     * @return the parsed statements of the script
+     */
+    static List<ParsedStatement> getOrParse(String location, byte[] content, Map<String, Object> variables,
+                                            Supplier<List<ParsedStatement>> parser) {
+        final String key = location + "#" + Hashing.sha256().hashBytes(content) + "#" + new TreeMap<>(variables);
+        return PARSED_SCRIPTS.asMap().computeIfAbsent(key, ignored -> Collections.unmodifiableList(parser.get()));
+    }
+
+    static boolean isApplied(String keyspaceName, String location, Map<String, Object> variables) {
+        return APPLIED_SCRIPTS.contains(appliedKey(keyspaceName, location, variables));
+    }
+
+    static void markApplied(String keyspaceName, String location, Map<String, Object> variables) {
+        APPLIED_SCRIPTS.add(appliedKey(keyspaceName, location, variables));
+    }
+
+    static void clear() {
+        PARSED_SCRIPTS.invalidateAll();
+        APPLIED_SCRIPTS.clear();
+    }
+
+    static int length(List<ParsedStatement> statements) {
+        long length = 0;
+        for (ParsedStatement parsedStatement : statements) {
+            length += parsedStatement.statement.getQuery().length();
+        }
+        return (int) Math.min(length, Integer.MAX_VALUE);
+    }
+
+    private static String appliedKey(String keyspaceName, String location, Map<String, Object> variables) {
+        return keyspaceName + "#" + location + "#" + new TreeMap<>(variables);
+    }
+
+    /**
+     * Parsed statement with the line number where it starts in the script
+     */
+    static final class ParsedStatement {
+        final SimpleStatement statement;
+        final int line;
+
+        ParsedStatement(SimpleStatement statement, int line) {
+            this.statement = statement;
+            this.line = line;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import io.github.johannesroesch.apollon.exception.ApollonException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+
+/**
+ * Execute the statements of a script with a window of in-flight asynchronous DML statements.
+ * <br/>
+ * DML statements (INSERT, UPDATE, DELETE, BATCH) are executed asynchronously, at most <em>maxInFlight</em> at a
+ * time. Any other statement (DDL, SELECT, ...) acts as a barrier: it waits for all pending DML statements
+ * and is executed synchronously, so the script order is preserved around schema changes.
+ * <br/>
+ * Errors are collected with the line number of the failing statement and reported at the next barrier.
+ */
+class PipelinedStatementExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelinedStatementExecutor.class);
+
+    private static final Pattern DML_PATTERN = Pattern.compile("^\\s*(INSERT|UPDATE|DELETE|BEGIN)\\s.*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final CqlSession session;
+    private final String scriptLocation;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final Queue<String> errors = new ConcurrentLinkedQueue<>();
+
+    PipelinedStatementExecutor(CqlSession session, String scriptLocation, int maxInFlight) {
+        this.session = session;
+        this.scriptLocation = scriptLocation;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    static boolean isDml(String query) {
+        return DML_PATTERN.matcher(query).matches();
+    }
+
+    private static boolean isDml(Statement<?> statement) {
+        return statement instanceof BoundStatement
+                || (statement instanceof SimpleStatement && isDml(((SimpleStatement) statement).getQuery()));
+    }
+
+    void execute(Statement<?> statement, int line) {
+        if (isDml(statement)) {
+            inFlight.acquireUninterruptibly();
+            try {
+                session.executeAsync(statement).whenComplete((resultSet, throwable) -> {
+                    if (throwable != null) {
+                        errors.add(String.format("line %s: %s", line, throwable.getMessage()));
+                    }
+                    inFlight.release();
+                });
+            } catch (RuntimeException e) {
+                inFlight.release();
+                throw e;
+            }
+        } else {
+            awaitCompletion();
+            try {
+                session.execute(statement);
+            } catch (RuntimeException e) {
+                throw new ApollonException(String.format("Error executing script '%s' at line %s: %s", scriptLocation, line, e.getMessage()), e);
+            }
+        }
+    }
+
+    /**
+     * Wait for all pending statements and report their errors
+     */
+    void awaitCompletion() {
+        inFlight.acquireUninterruptibly(maxInFlight);
+        inFlight.release(maxInFlight);
+        if (!errors.isEmpty()) {
+            final List<String> failures = new ArrayList<>(errors);
+            errors.clear();
+            failures.forEach(failure -> LOGGER.error("Error executing script '{}' at {}", scriptLocation, failure));
+            throw new ApollonException(String.format("%s statement(s) of script '%s' failed:%n%s", failures.size(),
+                    scriptLocation, String.join(System.lineSeparator(), failures)));
+        }
+    }
+}
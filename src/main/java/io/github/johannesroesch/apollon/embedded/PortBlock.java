@@ -0,0 +1,94 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Block of contiguous ports reserved by {@link PortFinder#reserveBlock(int)}.
+ * <br/>
+ * Each port is reserved by a file lock held until {@link #close()}. The operating system releases
+ * the locks when the JVM exits, even if it crashes, so a port is never reserved forever.
+ */
+public final class PortBlock implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PortBlock.class);
+
+    private final int firstPort;
+    private final int size;
+    private final List<FileLock> locks;
+
+    PortBlock(int firstPort, List<FileLock> locks) {
+        this.firstPort = firstPort;
+        this.size = locks.size();
+        this.locks = new ArrayList<>(locks);
+    }
+
+    /**
+     * @param index index of the port in the block, from 0 to size - 1
+     * @return the reserved port
+     */
+    public int get(int index) {
+        ValidationHelper.validateTrue(index >= 0 && index < size, "Port index %s is out of the block of %s ports", index, size);
+        return firstPort + index;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Release the reservation of the ports, so that other JVMs can reserve them
+     */
+    @Override
+    public synchronized void close() {
+        releaseAll(locks);
+        locks.clear();
+    }
+
+    static void releaseAll(List<FileLock> locks) {
+        for (FileLock lock : locks) {
+            final FileChannel channel = lock.channel();
+            try {
+                lock.release();
+            } catch (IOException e) {
+                LOGGER.debug("Cannot release the port lock {}", lock, e);
+            } finally {
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.debug("Cannot close the port lock file {}", channel, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PortBlock[%s-%s]", firstPort, firstPort + size - 1);
+    }
+}
@@ -16,11 +16,23 @@
 
 package io.github.johannesroesch.apollon.embedded;
 
+import io.github.johannesroesch.apollon.exception.ApollonException;
+
+import java.io.File;
 import java.io.IOException;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.stream.IntStream;
 
 public class PortFinder {
@@ -29,6 +41,11 @@ public class PortFinder {
     private static final int MIN_PORT_NUMBER = 1025;
     private static final int MAX_PORT_NUMBER = 65534;
 
+    static final int RESERVED_PORTS_START = 9042;
+    static final int RESERVED_PORTS_END = 17000;
+    static final String PORT_LOCKS_FOLDER_PROPERTY = "apollon.port.locks.folder";
+    static final List<String> LOOPBACK_HOSTNAMES = Arrays.asList("localhost", "127.0.0.1");
+
     private PortFinder() {
 
     }
@@ -112,6 +129,109 @@ public class PortFinder {
         }
     }
 
+    /**
+     * Reserve a block of <em>size</em> contiguous ports available on localhost, atomically across all the JVMs
+     * of the machine, e.g. the parallel Surefire forks. See {@link #reserveBlock(int, List)}
+     */
+    public static PortBlock reserveBlock(int size) {
+        return reserveBlock(size, LOOPBACK_HOSTNAMES);
+    }
+
+    /**
+     * Reserve a block of <em>size</em> contiguous ports available on all the <em>hostnames</em>.
+     * <br/>
+     * Each port of the block is reserved by a lock on the file <em>&lt;port&gt;.lock</em> of a folder
+     * shared by all the JVMs: <em>${java.io.tmpdir}/apollon-ports</em>, or the folder of
+     * the <em>apollon.port.locks.folder</em> system property. The locks are tried without waiting,
+     * the whole block is reserved or none of its ports, and the ports are probed only once they are locked,
+     * so concurrent JVMs never get the same port. The ports are reserved until the block is closed or the JVM exits.
+     *
+     * @param size      number of ports
+     * @param hostnames host names or addresses to check the ports on
+     * @return the reserved block of ports
+     */
+    public static PortBlock reserveBlock(int size, List<String> hostnames) {
+        return reserveBlock(size, hostnames, RESERVED_PORTS_START);
+    }
+
+    /**
+     * Same as {@link #reserveBlock(int, List)}, trying the blocks from <em>firstPortToTry</em> then wrapping around
+     */
+    static PortBlock reserveBlock(int size, List<String> hostnames, int firstPortToTry) {
+        ValidationHelper.validateTrue(size > 0, "The size of the port block should be positive");
+        final Path locksFolder = portLocksFolder();
+        final int blockCount = (RESERVED_PORTS_END - RESERVED_PORTS_START) / size;
+        final int firstBlock = Math.floorMod(firstPortToTry - RESERVED_PORTS_START, RESERVED_PORTS_END - RESERVED_PORTS_START) / size;
+        for (int i = 0; i < blockCount; i++) {
+            final int firstPort = RESERVED_PORTS_START + ((firstBlock + i) % blockCount) * size;
+            final List<FileLock> locks = tryLockPorts(locksFolder, firstPort, size);
+            if (locks != null) {
+                final int first = firstPort;
+                if (IntStream.range(first, first + size)
+                        .allMatch(port -> hostnames.stream().allMatch(hostname -> isTcpPortAvailable(hostname, port)))) {
+                    return new PortBlock(firstPort, locks);
+                }
+                PortBlock.releaseAll(locks);
+            }
+        }
+        throw new IllegalStateException(String.format("no block of %s available ports found between %s and %s.",
+                size, RESERVED_PORTS_START, RESERVED_PORTS_END));
+    }
+
+    /**
+     * @return the locks of all the ports, or null if any of them is already locked
+     */
+    private static List<FileLock> tryLockPorts(Path locksFolder, int firstPort, int size) {
+        final List<FileLock> locks = new ArrayList<>(size);
+        for (int port = firstPort; port < firstPort + size; port++) {
+            final FileLock lock = tryLockPort(locksFolder, port);
+            if (lock == null) {
+                PortBlock.releaseAll(locks);
+                return null;
+            }
+            locks.add(lock);
+        }
+        return locks;
+    }
+
+    private static FileLock tryLockPort(Path locksFolder, int port) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(locksFolder.resolve(port + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            final FileLock lock = channel.tryLock();
+            if (lock != null) {
+                return lock;
+            }
+        } catch (OverlappingFileLockException e) {
+            // Already reserved by this JVM
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new ApollonException(String.format("Cannot lock port %s in %s", port, locksFolder), e);
+        }
+        closeQuietly(channel);
+        return null;
+    }
+
+    private static Path portLocksFolder() {
+        final File folder = new File(System.getProperty(PORT_LOCKS_FOLDER_PROPERTY,
+                new File(System.getProperty("java.io.tmpdir"), "apollon-ports").getPath()));
+        try {
+            return Files.createDirectories(folder.toPath());
+        } catch (IOException e) {
+            throw new ApollonException(String.format("Cannot create the port locks folder %s", folder), e);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                /* nothing to release */
+            }
+        }
+    }
+
     private static int randomBetween(int start, int end) {
         return start + (int) (Math.random() * ((end - start) + 1));
     }
@@ -0,0 +1,213 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import io.github.johannesroesch.apollon.exception.ApollonException;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static io.github.johannesroesch.apollon.embedded.CassandraEmbeddedConfigParameters.*;
+
+/**
+ * Placement of the default data, commitlog, saved caches, hints and cdc_raw folders on a RAM-backed
+ * file system, e.g. <em>/dev/shm</em> or a tmpfs mount.
+ * <br/>
+ * The folders are placed below <em>&lt;ram disk&gt;/apollon-&lt;project id&gt;/</em>, keeping their relative path so
+ * that parallel test workers and projects do not share them. When the RAM disk does not exist, is not writable,
+ * has less free space than required or is not a tmpfs or ramfs file system, the folders stay on disk. The file
+ * system check can be skipped by forcing the RAM disk, e.g. for a RAM disk formatted with another file system.
+ * Folders configured explicitly are never moved.
+ * <br/>
+ * The write latency of the RAM disk and of the disk is measured and logged when the folders are placed.
+ */
+final class RamDiskFolders {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RamDiskFolders.class);
+
+    static final Path SHARED_MEMORY = Paths.get("/dev/shm");
+    static final long DEFAULT_MIN_FREE_SPACE_IN_MB = 512L;
+
+    private static final long MB = 1024L * 1024L;
+    static final Set<String> RAM_FILE_SYSTEM_TYPES = new HashSet<>(Arrays.asList("tmpfs", "ramfs"));
+    private static final List<String> FOLDER_PARAMETERS = Arrays.asList(DATA_FILE_FOLDER, COMMIT_LOG_FOLDER,
+            SAVED_CACHES_FOLDER, HINTS_FOLDER, CDC_RAW_FOLDER);
+    private static final int LATENCY_PROBE_WRITES = 32;
+    private static final int LATENCY_PROBE_BLOCK_SIZE = 4096;
+
+    private final Path ramDisk;
+    private final List<Path> folders;
+
+    private RamDiskFolders(Path ramDisk, List<Path> folders) {
+        this.ramDisk = ramDisk;
+        this.folders = folders;
+    }
+
+    /**
+     * Move the default folders to the RAM disk, updating the parameters
+     *
+     * @param parameters       embedded Cassandra server parameters
+     * @param ramDisk          root of the RAM-backed file system
+     * @param minFreeSpaceInMb free space required on the RAM disk
+     * @param forced           whether to use the RAM disk even when its file system is not tmpfs or ramfs
+     * @return the folders placed on the RAM disk, or empty when the folders stay on disk
+     */
+    static Optional<RamDiskFolders> placeIfAvailable(TypedMap parameters, Path ramDisk, long minFreeSpaceInMb, boolean forced) {
+        final Optional<String> unavailability = checkAvailability(ramDisk, minFreeSpaceInMb, forced);
+        if (unavailability.isPresent()) {
+            LOGGER.warn("RAM disk '{}' {}, keeping the embedded Cassandra folders on disk", ramDisk, unavailability.get());
+            return Optional.empty();
+        }
+
+        final String diskDataFolder = parameters.getTyped(DATA_FILE_FOLDER);
+        final List<Path> folders = new ArrayList<>();
+        for (String folderParameter : FOLDER_PARAMETERS) {
+            final String folder = parameters.getTyped(folderParameter);
+            if (isDefaultFolder(folder)) {
+                final Path ramFolder = Paths.get(ramFolder(ramDisk, folder));
+                createFolder(ramFolder);
+                folders.add(ramFolder);
+                parameters.put(folderParameter, ramFolder.toString());
+            }
+        }
+        if (folders.isEmpty()) {
+            LOGGER.info("No default folder to place on RAM disk '{}'", ramDisk);
+            return Optional.empty();
+        }
+        LOGGER.info("Embedded Cassandra folders placed on RAM disk '{}'", ramDisk);
+
+        if (isDefaultFolder(diskDataFolder)) {
+            logWriteLatency(Paths.get(diskDataFolder), Paths.get(parameters.<String>getTyped(DATA_FILE_FOLDER)));
+        }
+        return Optional.of(new RamDiskFolders(ramDisk, folders));
+    }
+
+    /**
+     * @return the reason why the RAM disk cannot be used, or empty when it can
+     */
+    static Optional<String> checkAvailability(Path ramDisk, long minFreeSpaceInMb, boolean forced) {
+        if (!Files.isDirectory(ramDisk) || !Files.isWritable(ramDisk)) {
+            return Optional.of("is not available");
+        }
+        try {
+            final FileStore fileStore = Files.getFileStore(ramDisk);
+            final long usableSpaceInMb = fileStore.getUsableSpace() / MB;
+            if (usableSpaceInMb < minFreeSpaceInMb) {
+                return Optional.of(String.format("has %s MB free, less than the %s MB required", usableSpaceInMb, minFreeSpaceInMb));
+            }
+            if (!RAM_FILE_SYSTEM_TYPES.contains(fileStore.type())) {
+                if (!forced) {
+                    return Optional.of(String.format("is a '%s' file system, not backed by memory", fileStore.type()));
+                }
+                LOGGER.warn("RAM disk '{}' is a '{}' file system, it may not be backed by memory", ramDisk, fileStore.type());
+            }
+        } catch (IOException e) {
+            return Optional.of("cannot be inspected: " + e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return the folder below the RAM disk, specific to the current project so that parallel builds do not share it
+     */
+    static String ramFolder(Path ramDisk, String defaultFolder) {
+        final String projectId = Integer.toHexString(new File("").getAbsolutePath().hashCode());
+        return ramDisk.resolve("apollon-" + projectId).resolve(defaultFolder).toString();
+    }
+
+    /**
+     * Delete the folders placed on the RAM disk to give the memory back, then their parents when empty
+     */
+    void delete() {
+        for (Path folder : folders) {
+            LOGGER.info("Deleting embedded Cassandra RAM disk folder '{}'", folder);
+            FileUtils.deleteQuietly(folder.toFile());
+            deleteEmptyParents(folder);
+        }
+    }
+
+    private void deleteEmptyParents(Path folder) {
+        Path parent = folder.getParent();
+        while (parent != null && !parent.equals(ramDisk)) {
+            try {
+                Files.deleteIfExists(parent);
+            } catch (DirectoryNotEmptyException e) {
+                // Still used by another test worker
+                return;
+            } catch (IOException e) {
+                LOGGER.debug("Cannot delete RAM disk folder '{}'", parent, e);
+                return;
+            }
+            parent = parent.getParent();
+        }
+    }
+
+    private static void createFolder(Path folder) {
+        try {
+            Files.createDirectories(folder);
+        } catch (IOException e) {
+            throw new ApollonException(String.format("Cannot create folder %s", folder), e);
+        }
+    }
+
+    private static void logWriteLatency(Path diskFolder, Path ramFolder) {
+        try {
+            createFolder(diskFolder);
+            final long diskMicros = writeLatencyMicros(diskFolder);
+            final long ramMicros = writeLatencyMicros(ramFolder);
+            LOGGER.info("Synced write latency of {} KB blocks: {} us on RAM disk instead of {} us on disk",
+                    LATENCY_PROBE_BLOCK_SIZE / 1024, ramMicros, diskMicros);
+        } catch (IOException e) {
+            LOGGER.debug("Cannot measure the write latency", e);
+        }
+    }
+
+    /**
+     * @return the average time to write and sync a block, in micro seconds
+     */
+    static long writeLatencyMicros(Path folder) throws IOException {
+        final Path probe = Files.createTempFile(folder, "apollon-write-latency", ".tmp");
+        try (FileChannel channel = FileChannel.open(probe, StandardOpenOption.WRITE)) {
+            final ByteBuffer block = ByteBuffer.allocate(LATENCY_PROBE_BLOCK_SIZE);
+            final long start = System.nanoTime();
+            for (int i = 0; i < LATENCY_PROBE_WRITES; i++) {
+                block.rewind();
+                channel.write(block);
+                channel.force(false);
+            }
+            return (System.nanoTime() - start) / LATENCY_PROBE_WRITES / 1000L;
+        } finally {
+            Files.deleteIfExists(probe);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.type.codec.registry.CodecRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turn repeated INSERT statements of a script into bound statements.
+ * <br/>
+ * Scripts seeding test data mostly repeat the same INSERT shape with different literals, e.g.
+ * <em>INSERT INTO users(id, name) VALUES(1, 'john');</em>. The second time a shape is met, it is
+ * prepared once as <em>INSERT INTO users(id, name) VALUES(?, ?);</em> and the literals of this
+ * statement and of the next ones are bound to it, sparing the server the parsing of each statement.
+ * <br/>
+ * Statements which cannot be bound safely (function calls, bind markers, JSON inserts, ...) are executed as is.
+ * <br/>
+ * The keyspace switched to by the USE statements of the script qualifies the tables of the shapes, so that
+ * the same unqualified INSERT met in two keyspaces is prepared once for each of them.
+ */
+class RepeatedInsertPreparer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepeatedInsertPreparer.class);
+
+    private static final Pattern INSERT_PATTERN = Pattern.compile(
+            "^\\s*INSERT\\s+INTO\\s+([^\\s(]+)\\s*\\(([^)]*)\\)\\s*VALUES\\s*\\((.*)\\)(\\s*(?:USING|IF)\\s[^);]*)?\\s*;?\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern FUNCTION_CALL = Pattern.compile("^[a-zA-Z_][a-zA-Z0-9_.]*\\s*\\(.*", Pattern.DOTALL);
+    private static final Pattern UNBINDABLE = Pattern.compile("^(?:\\?|:.*)$");
+    private static final Pattern USE_PATTERN = Pattern.compile("^\\s*USE\\s+(\"[^\"]+\"|[^\\s;]+)\\s*;?\\s*$",
+            Pattern.CASE_INSENSITIVE);
+
+    private final CqlSession session;
+    private final CodecRegistry codecRegistry;
+    private final Map<String, Integer> shapeOccurrences = new HashMap<>();
+    private final Map<String, PreparedStatement> preparedShapes = new HashMap<>();
+    private String keyspace;
+    private int boundStatements = 0;
+
+    RepeatedInsertPreparer(CqlSession session) {
+        this.session = session;
+        this.codecRegistry = session.getContext().getCodecRegistry();
+        this.keyspace = session.getKeyspace().map(name -> name.asCql(true)).orElse(null);
+    }
+
+    /**
+     * @param statement statement of the script
+     * @return a statement bound to the prepared shape of the statement or the statement itself
+     */
+    Statement<?> prepareIfRepeated(SimpleStatement statement) {
+        final Matcher use = USE_PATTERN.matcher(statement.getQuery());
+        if (use.matches()) {
+            keyspace = use.group(1);
+            return statement;
+        }
+        final ParsedInsert insert = ParsedInsert.parse(statement.getQuery());
+        if (insert == null) {
+            return statement;
+        }
+        final String shape = insert.getPreparedQuery(keyspace);
+        PreparedStatement prepared = preparedShapes.get(shape);
+        if (prepared == null) {
+            if (shapeOccurrences.merge(shape, 1, Integer::sum) < 2) {
+                return statement;
+            }
+            LOGGER.debug("Preparing repeated INSERT shape {}", shape);
+            prepared = session.prepare(shape);
+            preparedShapes.put(shape, prepared);
+            shapeOccurrences.remove(shape);
+        }
+        return bind(prepared, insert.getLiterals(), statement);
+    }
+
+    private Statement<?> bind(PreparedStatement prepared, List<String> literals, SimpleStatement statement) {
+        final ColumnDefinitions variables = prepared.getVariableDefinitions();
+        final Object[] values = new Object[literals.size()];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = codecRegistry.codecFor(variables.get(i).getType()).parse(literals.get(i));
+            }
+        } catch (RuntimeException e) {
+            LOGGER.debug("Cannot bind the literals of {}, executing it as is: {}", statement.getQuery(), e.getMessage());
+            return statement;
+        }
+        boundStatements++;
+        return prepared.bind(values);
+    }
+
+    /**
+     * @return number of statements bound to a prepared shape so far
+     */
+    int getBoundStatements() {
+        return boundStatements;
+    }
+
+    /**
+     * @return number of prepared shapes
+     */
+    int getPreparedShapes() {
+        return preparedShapes.size();
+    }
+
+    /**
+     * INSERT statement split into its shape with bind markers and its literal values
+     */
+    static final class ParsedInsert {
+        private final String table;
+        private final String preparedValues;
+        private final List<String> literals;
+
+        private ParsedInsert(String table, String preparedValues, List<String> literals) {
+            this.table = table;
+            this.preparedValues = preparedValues;
+            this.literals = Collections.unmodifiableList(literals);
+        }
+
+        /**
+         * @param query CQL statement
+         * @return the parsed INSERT or null if the statement is not an INSERT with literal values only
+         */
+        static ParsedInsert parse(String query) {
+            final Matcher matcher = INSERT_PATTERN.matcher(query);
+            if (!matcher.matches()) {
+                return null;
+            }
+            final String table = matcher.group(1);
+            final String columns = matcher.group(2).trim();
+            final List<String> literals = splitLiterals(matcher.group(3));
+            final int columnCount = columns.isEmpty() ? 0 : columns.split(",").length;
+            if (literals == null || literals.isEmpty() || literals.size() != columnCount) {
+                return null;
+            }
+            for (String literal : literals) {
+                if (literal.isEmpty() || UNBINDABLE.matcher(literal).matches() || FUNCTION_CALL.matcher(literal).matches()) {
+                    return null;
+                }
+            }
+            final StringBuilder preparedValues = new StringBuilder("(").append(columns).append(") VALUES(");
+            for (int i = 0; i < literals.size(); i++) {
+                preparedValues.append(i == 0 ? "?" : ", ?");
+            }
+            preparedValues.append(")");
+            if (matcher.group(4) != null) {
+                preparedValues.append(" ").append(matcher.group(4).trim());
+            }
+            return new ParsedInsert(table, preparedValues.append(";").toString(), literals);
+        }
+
+        /**
+         * Split the values on top level commas, ignoring those in strings and collections
+         *
+         * @return the trimmed literals or null if the values are not well-formed
+         */
+        private static List<String> splitLiterals(String values) {
+            final List<String> literals = new ArrayList<>();
+            int depth = 0;
+            boolean inString = false;
+            int start = 0;
+            for (int i = 0; i < values.length(); i++) {
+                final char c = values.charAt(i);
+                if (inString) {
+                    if (c == '\'') {
+                        if (i + 1 < values.length() && values.charAt(i + 1) == '\'') {
+                            i++;
+                        } else {
+                            inString = false;
+                        }
+                    }
+                } else if (c == '\'') {
+                    inString = true;
+                } else if (c == '(' || c == '[' || c == '{') {
+                    depth++;
+                } else if (c == ')' || c == ']' || c == '}') {
+                    if (--depth < 0) {
+                        return null;
+                    }
+                } else if (c == ',' && depth == 0) {
+                    literals.add(values.substring(start, i).trim());
+                    start = i + 1;
+                }
+            }
+            if (inString || depth != 0) {
+                return null;
+            }
+            literals.add(values.substring(start).trim());
+            return literals;
+        }
+
+        String getPreparedQuery() {
+            return "INSERT INTO " + table + preparedValues;
+        }
+
+        /**
+         * @param keyspace keyspace of the session, may be null
+         * @return the prepared query with its table qualified by the keyspace if it is not qualified yet
+         */
+        String getPreparedQuery(String keyspace) {
+            if (keyspace == null || table.contains(".")) {
+                return getPreparedQuery();
+            }
+            return "INSERT INTO " + keyspace + "." + table + preparedValues;
+        }
+
+        List<String> getLiterals() {
+            return literals;
+        }
+    }
+}
@@ -16,19 +16,30 @@
 
 package io.github.johannesroesch.apollon.embedded;
 
+import com.datastax.oss.driver.api.core.CqlIdentifier;
 import com.datastax.oss.driver.api.core.CqlSession;
 import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
 import com.datastax.oss.driver.api.core.cql.SimpleStatement;
 import com.datastax.oss.driver.api.core.cql.Statement;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.github.johannesroesch.apollon.exception.ApollonException;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
 
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
@@ -38,21 +49,59 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 public class ScriptExecutor {
     private static final Logger LOGGER = LoggerFactory.getLogger(ScriptExecutor.class);
 
-    private static final String COMMA = ";";
-    private static final String BATCH_BEGIN = "BEGIN";
-    private static final String BATCH_APPLY = "APPLY";
+    /**
+     * Maximum total length of the cached script templates, in characters
+     */
+    static final long MAX_CACHED_TEMPLATES_LENGTH = 16L * 1024L * 1024L;
 
-    private static final String CODE_DELIMITER_START = "^\\s*(?:AS)?\\s*\\$\\$\\s*$";
-    private static final String CODE_DELIMITER_END = "^\\s*\\$\\$\\s*;\\s*$";
-    private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\$\\{([a-z][a-zA-Z0-9_]*)\\}");
-    private static final Pattern SPECIAL_REGEX_CHARS = Pattern.compile("[\\{\\}\\(\\)\\[\\]\\.\\+\\*\\?\\^\\$\\\\\\|]");
+    private static final Cache<String, ScriptTemplate> TEMPLATES = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_CACHED_TEMPLATES_LENGTH)
+            .weigher((String location, ScriptTemplate template) -> template.length())
+            .build();
 
     private static final Map<String, Object> EMPTY_MAP = new HashMap<>();
 
+    private static final Predicate<SimpleStatement> ALL_STATEMENTS = statement -> true;
+
     private final CqlSession session;
+    private final int maxInFlightStatements;
+    private final boolean prepareRepeatedInserts;
+    private boolean cacheParsedScripts = false;
+    private boolean executeInProcess = false;
+    private boolean bulkApplySchema = false;
 
     public ScriptExecutor(CqlSession session) {
+        this(session, 1);
+    }
+
+    /**
+     * Create a script executor running DML statements (INSERT, UPDATE, DELETE, BATCH) asynchronously
+     * with at most <em>maxInFlightStatements</em> pending statements. Other statements (DDL, ...) are
+     * still executed synchronously, in order, once all pending DML statements are done.
+     * <br/>
+     * Failed statements are reported with their line number once the pending statements are done
+     *
+     * @param session               the session
+     * @param maxInFlightStatements maximum number of pending asynchronous statements, 1 to execute all statements synchronously
+     */
+    public ScriptExecutor(CqlSession session, int maxInFlightStatements) {
+        this(session, maxInFlightStatements, false);
+    }
+
+    /**
+     * Create a script executor which can also prepare the INSERT statements repeated with different
+     * literals in the scripts, and execute them as bound statements.
+     *
+     * @param session                the session
+     * @param maxInFlightStatements  maximum number of pending asynchronous statements, 1 to execute all statements synchronously
+     * @param prepareRepeatedInserts whether to prepare the repeated INSERT statements
+     * @see #ScriptExecutor(CqlSession, int)
+     */
+    public ScriptExecutor(CqlSession session, int maxInFlightStatements, boolean prepareRepeatedInserts) {
+        ValidationHelper.validateTrue(maxInFlightStatements > 0, "The maximum number of in-flight statements should be positive");
         this.session = session;
+        this.maxInFlightStatements = maxInFlightStatements;
+        this.prepareRepeatedInserts = prepareRepeatedInserts;
     }
 
     /**
@@ -72,10 +121,102 @@ public class ScriptExecutor {
      * @param values                 template values
      */
     public void executeScriptTemplate(String scriptTemplateLocation, Map<String, Object> values) {
-        final List<SimpleStatement> statements = buildStatements(loadScriptAsLines(scriptTemplateLocation, values));
-        for (SimpleStatement statement : statements) {
-            LOGGER.debug("\tSCRIPT : {}\n", statement.getQuery());
-            session.execute(statement);
+        executeScriptTemplate(scriptTemplateLocation, values, ALL_STATEMENTS);
+    }
+
+    /**
+     * Execute only the DML statements (INSERT, UPDATE, DELETE, BATCH) of a CQL script template, e.g. to seed
+     * again the tables of a keyspace truncated after a test. The schema statements are skipped
+     *
+     * @param scriptTemplateLocation the location of the script template in the class path
+     * @param values                 template values
+     */
+    void executeDataStatements(String scriptTemplateLocation, Map<String, Object> values) {
+        executeScriptTemplate(scriptTemplateLocation, values, statement -> PipelinedStatementExecutor.isDml(statement.getQuery()));
+    }
+
+    private void executeScriptTemplate(String scriptTemplateLocation, Map<String, Object> values, Predicate<SimpleStatement> filter) {
+        final int[] statementCount = {0};
+        final long start = System.nanoTime();
+        if (executeInProcess) {
+            executeInProcess(scriptTemplateLocation, values, filter, statementCount);
+            logThroughput(scriptTemplateLocation, statementCount[0], System.nanoTime() - start, null);
+            return;
+        }
+
+        final RepeatedInsertPreparer preparer = prepareRepeatedInserts ? new RepeatedInsertPreparer(session) : null;
+        if (maxInFlightStatements > 1) {
+            final PipelinedStatementExecutor executor = new PipelinedStatementExecutor(session, scriptTemplateLocation, maxInFlightStatements);
+            forEachStatement(scriptTemplateLocation, values, filter, (statement, line) -> {
+                LOGGER.debug("\tSCRIPT : {}\n", statement.getQuery());
+                executor.execute(preparer == null ? statement : preparer.prepareIfRepeated(statement), line);
+                statementCount[0]++;
+            });
+            executor.awaitCompletion();
+        } else {
+            forEachStatement(scriptTemplateLocation, values, filter, (statement, line) -> {
+                LOGGER.debug("\tSCRIPT : {}\n", statement.getQuery());
+                session.execute(preparer == null ? statement : preparer.prepareIfRepeated(statement));
+                statementCount[0]++;
+            });
+        }
+        logThroughput(scriptTemplateLocation, statementCount[0], System.nanoTime() - start, preparer);
+    }
+
+    private void forEachStatement(String scriptLocation, Map<String, Object> variables, Predicate<SimpleStatement> filter,
+                                  ObjIntConsumer<SimpleStatement> consumer) {
+        forEachStatement(scriptLocation, variables, (statement, line) -> {
+            if (filter.test(statement)) {
+                consumer.accept(statement, line);
+            }
+        });
+    }
+
+    private void executeInProcess(String scriptTemplateLocation, Map<String, Object> values, Predicate<SimpleStatement> filter,
+                                  int[] statementCount) {
+        final String sessionKeyspace = session.getKeyspace().map(CqlIdentifier::asInternal).orElse(null);
+        final InProcessStatementExecutor executor = new InProcessStatementExecutor(scriptTemplateLocation, sessionKeyspace, bulkApplySchema);
+        // Refresh the schema metadata of the driver once, after the script, instead of on each schema change event
+        final boolean pauseSchemaMetadata = bulkApplySchema && session.isSchemaMetadataEnabled();
+        if (pauseSchemaMetadata) {
+            session.setSchemaMetadataEnabled(false).toCompletableFuture().join();
+        }
+        try {
+            forEachStatement(scriptTemplateLocation, values, filter, (statement, line) -> {
+                LOGGER.debug("\tSCRIPT : {}\n", statement.getQuery());
+                executor.execute(statement.getQuery(), line);
+                statementCount[0]++;
+            });
+            executor.complete();
+            switchSessionKeyspace(sessionKeyspace, executor.getKeyspace());
+        } finally {
+            if (pauseSchemaMetadata) {
+                // Back to the configured value, which triggers a single refresh
+                session.setSchemaMetadataEnabled(null).toCompletableFuture().join();
+            }
+        }
+    }
+
+    /**
+     * A USE statement of the script only switched the keyspace of the in-process execution: switch the session too,
+     * as if the script had been executed by the session
+     */
+    private void switchSessionKeyspace(String sessionKeyspace, String scriptKeyspace) {
+        if (scriptKeyspace != null && !scriptKeyspace.equals(sessionKeyspace)) {
+            LOGGER.debug("Switching the session to keyspace {} used by the script", scriptKeyspace);
+            session.execute("USE " + CqlIdentifier.fromInternal(scriptKeyspace).asCql(true));
+        }
+    }
+
+    private void logThroughput(String scriptLocation, int statementCount, long elapsedNanos, RepeatedInsertPreparer preparer) {
+        if (LOGGER.isDebugEnabled()) {
+            final long statementsPerSecond = elapsedNanos > 0 ? statementCount * TimeUnit.SECONDS.toNanos(1) / elapsedNanos : statementCount;
+            final String prepared = preparer == null ? "" : String.format(", %s bound to %s prepared statement(s)",
+                    preparer.getBoundStatements(), preparer.getPreparedShapes());
+            final long microsPerStatement = statementCount > 0 ? TimeUnit.NANOSECONDS.toMicros(elapsedNanos) / statementCount : 0L;
+            LOGGER.debug("Executed {} statement(s) of script '{}' {} in {} ms ({} statements/s, {} us/statement{})", statementCount, scriptLocation,
+                    bulkApplySchema ? "in-process with bulk schema" : executeInProcess ? "in-process" : "through the driver", TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    statementsPerSecond, microsPerStatement, prepared);
         }
     }
 
@@ -124,79 +265,164 @@ public class ScriptExecutor {
     }
 
     protected List<String> loadScriptAsLines(String scriptLocation, Map<String, Object> variables) {
+        List<String> lines = new ArrayList<>();
+        forEachLine(scriptLocation, variables, (line, lineNumber) -> lines.add(line));
+        return lines;
+    }
 
-        InputStream inputStream = this.getClass().getResourceAsStream("/" + scriptLocation);
+    /**
+     * Parse the script incrementally and hand each statement to the consumer as soon as it is parsed.
+     * Only the statement being parsed is kept in memory, whatever the size of the script
+     *
+     * @param scriptLocation the location of the script file in the class path
+     * @param variables      template values
+     * @param consumer       consumer of the parsed statements and of the line number where they start
+     */
+    protected void forEachStatement(String scriptLocation, Map<String, Object> variables, ObjIntConsumer<SimpleStatement> consumer) {
+        if (cacheParsedScripts) {
+            final byte[] content = readScript(scriptLocation, reader -> IOUtils.toByteArray(reader, Charset.defaultCharset()));
+            ParsedScriptCache.getOrParse(scriptLocation, content, variables, () -> parseStatements(content, variables))
+                    .forEach(parsed -> consumer.accept(parsed.statement, parsed.line));
+        } else {
+            final CqlScriptParser parser = new CqlScriptParser();
+            forEachLine(scriptLocation, variables, (line, lineNumber) -> {
+                final SimpleStatement statement = parser.accept(line, lineNumber);
+                if (statement != null) {
+                    consumer.accept(statement, parser.getCompletedStatementLine());
+                }
+            });
+        }
+    }
 
-        ValidationHelper.validateNotNull(inputStream, "Cannot find CQL script file at location '%s'", scriptLocation);
+    private List<ParsedScriptCache.ParsedStatement> parseStatements(byte[] content, Map<String, Object> variables) {
+        final List<ParsedScriptCache.ParsedStatement> statements = new ArrayList<>();
+        final CqlScriptParser parser = new CqlScriptParser();
+        try (BufferedReader reader = new BufferedReader(new StringReader(new String(content, Charset.defaultCharset())))) {
+            ScriptTemplate.compile(reader).render(variables, (line, lineNumber) -> {
+                final SimpleStatement statement = parser.accept(line, lineNumber);
+                if (statement != null) {
+                    statements.add(new ParsedScriptCache.ParsedStatement(statement, parser.getCompletedStatementLine()));
+                }
+            });
+        } catch (IOException e) {
+            throw new ApollonException("Cannot parse CQL script", e);
+        }
+        return statements;
+    }
 
-        Scanner scanner = new Scanner(inputStream);
-        List<String> lines = new ArrayList<>();
-        while (scanner.hasNextLine()) {
-            String nextLine = maybeReplaceVariables(scanner, variables);
-            if (isNotBlank(nextLine)) {
-                lines.add(nextLine);
-            }
+    /**
+     * Scripts without variables are streamed line by line. Script templates are compiled once
+     * per location and rendered from the cached {@link ScriptTemplate} afterwards
+     */
+    private void forEachLine(String scriptLocation, Map<String, Object> variables, ObjIntConsumer<String> consumer) {
+        if (variables.isEmpty()) {
+            readScript(scriptLocation, reader -> {
+                String line;
+                int lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    String nextLine = line.trim();
+                    if (isNotBlank(nextLine)) {
+                        consumer.accept(nextLine, lineNumber);
+                    }
+                }
+                return null;
+            });
+        } else {
+            TEMPLATES.asMap().computeIfAbsent(scriptLocation, location -> readScript(location, ScriptTemplate::compile))
+                    .render(variables, consumer);
         }
-        return lines;
     }
 
-    private String maybeReplaceVariables(Scanner scanner, Map<String, Object> variables) {
-        String nextLine = scanner.nextLine().trim();
-        if (isNotBlank(nextLine) && !variables.isEmpty()) {
-            final Matcher matcher = VARIABLE_PATTERN.matcher(nextLine);
-            while (matcher.find()) {
-                final String group = matcher.group(1);
-                ValidationHelper.validateTrue(variables.containsKey(group),
-                        "Cannot find value for variable ${%s} in the variable map provided to ScriptExecutor", group);
-                final String replacement = SPECIAL_REGEX_CHARS.matcher(variables.get(group).toString()).replaceAll("\\\\$0");
-                nextLine = nextLine.replaceFirst("\\$\\{" + group + "\\}", replacement);
+    private <T> T readScript(String scriptLocation, ScriptReader<T> scriptReader) {
 
-            }
+        InputStream inputStream = this.getClass().getResourceAsStream("/" + scriptLocation);
+
+        ValidationHelper.validateNotNull(inputStream, "Cannot find CQL script file at location '%s'", scriptLocation);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, Charset.defaultCharset()))) {
+            return scriptReader.read(reader);
+        } catch (IOException e) {
+            throw new ApollonException(String.format("Cannot read CQL script file at location %s", scriptLocation), e);
         }
-        return nextLine;
+    }
+
+    @FunctionalInterface
+    private interface ScriptReader<T> {
+        T read(BufferedReader reader) throws IOException;
     }
 
     protected List<SimpleStatement> buildStatements(List<String> lines) {
         List<SimpleStatement> statements = new ArrayList<>();
-        StringBuilder statement = new StringBuilder();
-        boolean batch = false;
-        boolean codeBlock = false;
-        StringBuilder batchStatement = new StringBuilder();
+        final CqlScriptParser parser = new CqlScriptParser();
         for (String line : lines) {
-            if (line.trim().startsWith(BATCH_BEGIN)) {
-                batch = true;
-            }
-            if (line.trim().matches(CODE_DELIMITER_START)) {
-                codeBlock = !codeBlock;
-            }
-
-            if (batch) {
-                batchStatement.append(" ").append(line);
-                if (line.trim().startsWith(BATCH_APPLY)) {
-                    batch = false;
-                    statements.add(SimpleStatement.newInstance(batchStatement.toString()));
-                    batchStatement = new StringBuilder();
-                }
-            } else if (codeBlock) {
-                statement.append(line);
-                if (line.trim().matches(CODE_DELIMITER_END)) {
-                    codeBlock = false;
-                    statements.add(SimpleStatement.newInstance(statement.toString()));
-                    statement = new StringBuilder();
-                }
-            } else {
-                statement.append(line);
-                if (line.trim().endsWith(COMMA)) {
-                    statements.add(SimpleStatement.newInstance(statement.toString()));
-                    statement = new StringBuilder();
-                } else {
-                    statement.append(" ");
-                }
+            final SimpleStatement statement = parser.accept(line);
+            if (statement != null) {
+                statements.add(statement);
             }
         }
         return statements;
     }
 
+    /**
+     * Clear the compiled script templates, e.g. between tests changing the scripts of the class path
+     */
+    static void clearScriptTemplates() {
+        TEMPLATES.invalidateAll();
+    }
+
+    /**
+     * Parse each script once per process and reuse the parsed statements for the next executions
+     *
+     * @param cacheParsedScripts whether to cache the parsed scripts
+     * @return this script executor
+     */
+    ScriptExecutor cacheParsedScripts(boolean cacheParsedScripts) {
+        this.cacheParsedScripts = cacheParsedScripts;
+        return this;
+    }
+
+    /**
+     * Execute the statements of the scripts directly in the embedded Cassandra server running in this JVM,
+     * bypassing the driver, the native protocol and the loopback network. The session is still used
+     * by the <em>execute</em> methods and its keyspace, if any, is the keyspace of the scripts. As with the session,
+     * a <em>USE</em> statement switches the keyspace of the next statements of the script, and of the session once
+     * the script is executed successfully.
+     * <br/>
+     * The statements are executed synchronously, in order: the maximum number of in-flight statements and the
+     * preparation of the repeated INSERT statements do not apply. The schema changes are notified to the
+     * driver sessions as usual, without waiting for their schema agreement
+     *
+     * @param executeInProcess whether to execute the scripts in-process
+     * @return this script executor
+     */
+    public ScriptExecutor executeInProcess(boolean executeInProcess) {
+        ValidationHelper.validateTrue(!executeInProcess || InProcessStatementExecutor.isAvailable(),
+                "In-process execution requires the embedded Cassandra server to be started in this JVM");
+        this.executeInProcess = executeInProcess;
+        this.bulkApplySchema = bulkApplySchema && executeInProcess;
+        return this;
+    }
+
+    /**
+     * Execute the scripts in-process and apply their consecutive schema statements (CREATE/ALTER/DROP KEYSPACE,
+     * TABLE, TYPE, INDEX, ...) to the embedded Cassandra server as one combined schema change, instead of one schema
+     * migration per statement. The schema metadata of the driver session is refreshed once, after each script.
+     * <br/>
+     * Any other statement, e.g. <em>USE</em> or <em>INSERT</em>, first applies the pending schema statements, so
+     * the script order is preserved. See {@link #executeInProcess(boolean)}
+     *
+     * @param bulkApplySchema whether to apply the schema statements in bulk
+     * @return this script executor
+     */
+    public ScriptExecutor bulkApplySchema(boolean bulkApplySchema) {
+        if (bulkApplySchema) {
+            executeInProcess(true);
+        }
+        this.bulkApplySchema = bulkApplySchema;
+        return this;
+    }
+
     public CqlSession getSession() {
         return session;
     }
@@ -0,0 +1,128 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Script template compiled once into immutable segments.
+ * <br/>
+ * Each non blank line is split into literal text and <strong>${variable}</strong> references,
+ * so that rendering the template with a values map only appends the segments, without any regular expression.
+ */
+final class ScriptTemplate {
+    private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\$\\{([a-z][a-zA-Z0-9_]*)\\}");
+
+    private final int[] lineNumbers;
+    private final Line[] lines;
+    private final int length;
+
+    private ScriptTemplate(int[] lineNumbers, Line[] lines) {
+        this.lineNumbers = lineNumbers;
+        this.lines = lines;
+        this.length = Arrays.stream(lines).mapToInt(line -> line.text.length()).sum();
+    }
+
+    static ScriptTemplate compile(BufferedReader reader) throws IOException {
+        final List<Integer> lineNumbers = new ArrayList<>();
+        final List<Line> lines = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            final String trimmed = line.trim();
+            if (isNotBlank(trimmed)) {
+                lineNumbers.add(lineNumber);
+                lines.add(Line.compile(trimmed));
+            }
+        }
+        return new ScriptTemplate(lineNumbers.stream().mapToInt(Integer::intValue).toArray(), lines.toArray(new Line[0]));
+    }
+
+    /**
+     * @return the number of characters of the non blank lines, to weigh the template in the caches
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * Render each non blank line of the template
+     *
+     * @param variables template values
+     * @param consumer  consumer of the rendered lines and of their line number
+     */
+    void render(Map<String, Object> variables, ObjIntConsumer<String> consumer) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < lines.length; i++) {
+            final String rendered = lines[i].render(variables, builder);
+            if (isNotBlank(rendered)) {
+                consumer.accept(rendered, lineNumbers[i]);
+            }
+        }
+    }
+
+    private static final class Line {
+        private final String text;
+        private final String[] literals;
+        private final String[] variables;
+
+        private Line(String text, String[] literals, String[] variables) {
+            this.text = text;
+            this.literals = literals;
+            this.variables = variables;
+        }
+
+        private static Line compile(String text) {
+            final List<String> literals = new ArrayList<>();
+            final List<String> variables = new ArrayList<>();
+            final Matcher matcher = VARIABLE_PATTERN.matcher(text);
+            int start = 0;
+            while (matcher.find()) {
+                literals.add(text.substring(start, matcher.start()));
+                variables.add(matcher.group(1));
+                start = matcher.end();
+            }
+            literals.add(text.substring(start));
+            return new Line(text, literals.toArray(new String[0]), variables.toArray(new String[0]));
+        }
+
+        private String render(Map<String, Object> values, StringBuilder builder) {
+            if (variables.length == 0 || values.isEmpty()) {
+                return text;
+            }
+            builder.setLength(0);
+            for (int i = 0; i < variables.length; i++) {
+                final String variable = variables[i];
+                ValidationHelper.validateTrue(values.containsKey(variable),
+                        "Cannot find value for variable ${%s} in the variable map provided to ScriptExecutor", variable);
+                builder.append(literals[i]).append(values.get(variable));
+            }
+            return builder.append(literals[variables.length]).toString();
+        }
+    }
+}
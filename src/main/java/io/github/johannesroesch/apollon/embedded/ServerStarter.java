@@ -19,6 +19,7 @@ package io.github.johannesroesch.apollon.embedded;
 import com.google.common.collect.ImmutableSet;
 import io.github.johannesroesch.apollon.exception.ApollonException;
 import io.netty.util.concurrent.DefaultThreadFactory;
+import org.apache.cassandra.config.Config;
 import org.apache.cassandra.service.CassandraDaemon;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -29,17 +30,24 @@ import javax.management.*;
 import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
+import java.util.Properties;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static io.github.johannesroesch.apollon.embedded.ApollonCassandraConfig.*;
 import static io.github.johannesroesch.apollon.embedded.CassandraEmbeddedConfigParameters.*;
-import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 public enum ServerStarter {
     CASSANDRA_EMBEDDED;
@@ -47,41 +55,45 @@ public enum ServerStarter {
     private static final Logger LOGGER = LoggerFactory.getLogger(ServerStarter.class);
 
     private static final OrderedShutdownHook orderedShutdownHook = new OrderedShutdownHook();
+    private static final int NATIVE_TRANSPORT_PROBE_TIMEOUT_MS = 100;
+    private static final long NATIVE_TRANSPORT_PROBE_INTERVAL_MS = 20L;
     private static int cqlPort;
 
     private static int thriftPort;
 
-    private static int storageRandomPort() {
-        return PortFinder.findAvailableBetween(7001, 7500);
-    }
+    // CQL, thrift, storage, storage SSL and JMX ports
+    private static final int RESERVED_PORT_COUNT = 5;
 
-    private static int storageSslRandomPort() {
-        return PortFinder.findAvailableBetween(7501, 7999);
-    }
+    /**
+     * Ports reserved across JVMs for the ports that are not configured
+     */
+    private static PortBlock reservedPorts;
 
-    private static int jxmRandomPort() {
-        return PortFinder.findAvailableBetween(7501, 7999);
-    }
+    /**
+     * Default folders placed on a RAM disk, deleted on shutdown
+     */
+    private static RamDiskFolders ramDiskFolders;
 
-    private static int cqlRandomPort() {
-        return PortFinder.findFirstAvailableBetween(9042, 9499);
-    }
+    private GoldenImage goldenImage;
 
-    private static int thriftRandomPort() {
-        return PortFinder.findFirstAvailableBetween(9160, 9999);
+    public void startServer(String cassandraHost, TypedMap parameters) {
+        startServer(cassandraHost, parameters, new StartupReport());
     }
 
-    public void startServer(String cassandraHost, TypedMap parameters) {
+    public void startServer(String cassandraHost, TypedMap parameters, StartupReport startupReport) {
         if (StringUtils.isBlank(cassandraHost)) {
 
             LOGGER.debug("Do start embedded Cassandra server ");
-            validateDataFolders(parameters);
-            cleanCassandraDataFiles(parameters);
-            randomizePortsIfNeeded(parameters);
+            startupReport.time(StartupReport.PLACE_RAM_DISK_FOLDERS, () -> placeRamDiskFoldersIfNeeded(parameters));
+            startupReport.time(StartupReport.VALIDATE_DATA_FOLDERS, () -> validateDataFolders(parameters));
+            if (!restoreGoldenImageIfAvailable(parameters, startupReport)) {
+                startupReport.time(StartupReport.CLEAN_DATA_FILES, () -> cleanCassandraDataFiles(parameters));
+            }
+            startupReport.time(StartupReport.RANDOMIZE_PORTS, () -> randomizePortsIfNeeded(parameters));
 
 
             // Start embedded server
-            CASSANDRA_EMBEDDED.start(parameters);
+            CASSANDRA_EMBEDDED.start(parameters, startupReport);
         }
     }
 
@@ -102,6 +114,20 @@ public enum ServerStarter {
         }
     }
 
+    /**
+     * Save the golden image after the first bootstrap or report the startup time saved by restoring it
+     *
+     * @param parameters    embedded Cassandra server parameters
+     * @param startupReport startup report of the server
+     */
+    void completeGoldenImage(TypedMap parameters, StartupReport startupReport) {
+        if (goldenImage != null) {
+            final long startupMillis = startupReport.elapsedMillis();
+            startupReport.time(StartupReport.SAVE_GOLDEN_IMAGE, () -> goldenImage.complete(parameters, startupMillis));
+            goldenImage = null;
+        }
+    }
+
     public OrderedShutdownHook getShutdownHook() {
         return orderedShutdownHook;
     }
@@ -110,13 +136,13 @@ public enum ServerStarter {
         orderedShutdownHook.callShutDown();
     }
 
-    private void start(final TypedMap parameters) {
+    private void start(final TypedMap parameters, final StartupReport startupReport) {
         if (isAlreadyRunning() && CassandraEmbeddedServer.embeddedServerStarted) {
             LOGGER.debug("Cassandra is already running, not starting new one");
             return;
         }
 
-        final String triggersDir = createTriggersFolder();
+        final String triggersDir = createTriggersFolder(parameters.getTyped(WORKER_ID));
 
         LOGGER.info(" Cassandra listen address = {}", parameters.<String>getTyped(LISTEN_ADDRESS));
         LOGGER.info(" Cassandra RPC address = {}", parameters.<String>getTyped(RPC_ADDRESS));
@@ -132,8 +158,10 @@ public enum ServerStarter {
         LOGGER.info("Starting Cassandra...");
 
         System.setProperty("cassandra.triggers_dir", triggersDir);
-        System.setProperty("cassandra.embedded.concurrent.reads", parameters.getTypedOr(CASSANDRA_CONCURRENT_READS, 32).toString());
-        System.setProperty("cassandra.embedded.concurrent.writes", parameters.getTypedOr(CASSANDRA_CONCURRENT_WRITES, 32).toString());
+        final ConfigProfile configProfile = parameters.getTyped(CONFIG_PROFILE);
+        final int defaultConcurrency = configProfile == null ? ConfigProfile.DEFAULT_CONCURRENCY : configProfile.defaultConcurrency();
+        System.setProperty("cassandra.embedded.concurrent.reads", parameters.getTypedOr(CASSANDRA_CONCURRENT_READS, defaultConcurrency).toString());
+        System.setProperty("cassandra.embedded.concurrent.writes", parameters.getTypedOr(CASSANDRA_CONCURRENT_WRITES, defaultConcurrency).toString());
         System.setProperty("cassandra-foreground", "true");
 
         final boolean useUnsafeCassandra = parameters.getTyped(USE_UNSAFE_CASSANDRA_DAEMON);
@@ -143,40 +171,49 @@ public enum ServerStarter {
         }
 
         System.setProperty("cassandra.config.loader", "io.github.johannesroesch.apollon.embedded.ApollonCassandraConfig");
+        configureProfileAndOverrides(parameters);
+        final boolean inMemoryStorage = parameters.containsKey(IN_MEMORY_MEMTABLE_CEILING_IN_MB);
+        if (inMemoryStorage) {
+            LOGGER.info(" Embedded Cassandra in-memory storage, memtable ceiling = {} MB", parameters.<Integer>getTyped(IN_MEMORY_MEMTABLE_CEILING_IN_MB));
+            InMemoryStorage.configureSystemKeyspaces();
+        }
 
-        final CountDownLatch startupLatch = new CountDownLatch(1);
+        if (parameters.<Boolean>getTyped(TRACK_DIRTY_TABLES)) {
+            System.setProperty(DirtyTableTracker.QUERY_HANDLER_PROPERTY, DirtyTableTracker.class.getName());
+        }
+
+        final boolean freshDataDirectories = isFastBootstrap(parameters);
 
         ThreadFactory threadFactory = new DefaultThreadFactory("Apollon");
 
         final ExecutorService executor = Executors.newSingleThreadExecutor(threadFactory);
         final AtomicReference<CassandraDaemon> daemonRef = new AtomicReference<>();
-        executor.execute(() -> {
-            if (useUnsafeCassandra) {
-                LOGGER.warn("******* WARNING, starting unsafe embedded Cassandra daemon. This should be only used for unit testing or development and not for production !");
-            }
-
-            CassandraDaemon cassandraDaemon = useUnsafeCassandra
-                    ? new ApollonCassandraDaemon() : new CassandraDaemon();
-
-            cassandraDaemon.completeSetup();
-            cassandraDaemon.activate();
-            daemonRef.getAndSet(cassandraDaemon);
-            startupLatch.countDown();
-        });
-
-
-        try {
-            startupLatch.await(30, SECONDS);
-        } catch (InterruptedException e) {
-            LOGGER.error("Timeout starting Cassandra embedded", e);
-            throw new IllegalStateException("Timeout starting Cassandra embedded", e);
+        if (useUnsafeCassandra) {
+            LOGGER.warn("******* WARNING, starting unsafe embedded Cassandra daemon. This should be only used for unit testing or development and not for production !");
         }
+        final long daemonStart = System.nanoTime();
+        final CompletableFuture<CassandraDaemon> startupFuture = activateDaemon(executor,
+                () -> useUnsafeCassandra ? new ApollonCassandraDaemon(startupReport, freshDataDirectories) : new CassandraDaemon(true),
+                cassandraDaemon -> {
+                    if (inMemoryStorage) {
+                        InMemoryStorage.install();
+                    }
+                    startupReport.record(StartupReport.DAEMON_STARTUP, daemonStart);
+                    daemonRef.getAndSet(cassandraDaemon);
+                });
+
+        final long timeoutMillis = parameters.<Number>getTyped(STARTUP_TIMEOUT_IN_MILLIS).longValue();
+        final long deadline = System.nanoTime() + MILLISECONDS.toNanos(timeoutMillis);
+        awaitDaemonStartup(startupFuture, timeoutMillis, executor);
+        startupReport.time(StartupReport.NATIVE_TRANSPORT_READY, () -> awaitNativeTransport(parameters, deadline, executor));
 
         if (parameters.containsKey(SHUTDOWN_HOOK)) {
             CassandraShutDownHook shutDownHook = parameters.getTyped(SHUTDOWN_HOOK);
             shutDownHook.addCassandraDaemonRef(daemonRef);
             shutDownHook.addOrderedShutdownHook(orderedShutdownHook);
             shutDownHook.addExecutorService(executor);
+            shutDownHook.addReleaseReservedPorts(ServerStarter::releaseReservedPorts);
+            shutDownHook.addDeleteRamDiskFolders(ServerStarter::deleteRamDiskFolders);
         } else {
             // Generate an OrderedShutdownHook to shutdown all connections from java clients before closing the server
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
@@ -190,11 +227,99 @@ public enum ServerStarter {
                 LOGGER.info("Shutting down embedded Cassandra server");
                 // Then shutdown the server
                 executor.shutdownNow();
+                releaseReservedPorts();
+                deleteRamDiskFolders();
             }));
         }
 
     }
 
+    /**
+     * Create and activate the daemon in the executor thread.
+     * <br/>
+     * The daemon must run managed: an unmanaged daemon calls <em>System.exit</em> when its startup fails, which
+     * would kill the test JVM instead of failing the startup.
+     *
+     * @param executor         thread of the daemon
+     * @param daemonFactory    creates the managed daemon
+     * @param afterActivation  called in the executor thread once the daemon is activated
+     * @return the started daemon, or the startup failure
+     */
+    static CompletableFuture<CassandraDaemon> activateDaemon(Executor executor, Supplier<CassandraDaemon> daemonFactory,
+                                                             Consumer<CassandraDaemon> afterActivation) {
+        final CompletableFuture<CassandraDaemon> startupFuture = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                CassandraDaemon cassandraDaemon = daemonFactory.get();
+
+                cassandraDaemon.completeSetup();
+                cassandraDaemon.activate();
+                afterActivation.accept(cassandraDaemon);
+                startupFuture.complete(cassandraDaemon);
+            } catch (Throwable throwable) {
+                startupFuture.completeExceptionally(throwable);
+            }
+        });
+        return startupFuture;
+    }
+
+    private void awaitDaemonStartup(CompletableFuture<CassandraDaemon> startupFuture, long timeoutMillis, ExecutorService executor) {
+        try {
+            startupFuture.get(timeoutMillis, MILLISECONDS);
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            LOGGER.error("Error starting Cassandra embedded", e.getCause());
+            throw new ApollonException("Error starting Cassandra embedded", e.getCause());
+        } catch (TimeoutException e) {
+            executor.shutdownNow();
+            LOGGER.error("Timeout starting Cassandra embedded after {} ms", timeoutMillis);
+            throw new ApollonException(String.format("Timeout starting Cassandra embedded after %s ms", timeoutMillis), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while starting Cassandra embedded", e);
+        }
+    }
+
+    /**
+     * Wait until the native transport accepts connections on the CQL port
+     */
+    private void awaitNativeTransport(TypedMap parameters, long deadline, ExecutorService executor) {
+        final InetSocketAddress address = new InetSocketAddress(parameters.<String>getTyped(RPC_ADDRESS), parameters.<Integer>getTyped(CASSANDRA_CQL_PORT));
+        while (true) {
+            try (Socket socket = new Socket()) {
+                socket.connect(address, NATIVE_TRANSPORT_PROBE_TIMEOUT_MS);
+                LOGGER.debug("Native transport is accepting connections on {}", address);
+                return;
+            } catch (IOException e) {
+                if (System.nanoTime() - deadline > 0) {
+                    executor.shutdownNow();
+                    throw new ApollonException(String.format("Timeout waiting for the native transport to listen on %s", address), e);
+                }
+            }
+            try {
+                Thread.sleep(NATIVE_TRANSPORT_PROBE_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the native transport", e);
+            }
+        }
+    }
+
+    private void placeRamDiskFoldersIfNeeded(TypedMap parameters) {
+        final String ramDisk;
+        if (parameters.containsKey(RAM_DISK_FOLDER)) {
+            ramDisk = parameters.getTyped(RAM_DISK_FOLDER);
+        } else if (parameters.containsKey(IN_MEMORY_MEMTABLE_CEILING_IN_MB) && parameters.<Boolean>getTyped(IN_MEMORY_FOLDERS_IN_SHARED_MEMORY)) {
+            ramDisk = RamDiskFolders.SHARED_MEMORY.toString();
+        } else {
+            return;
+        }
+        deleteRamDiskFolders();
+        ramDiskFolders = RamDiskFolders.placeIfAvailable(parameters, Paths.get(ramDisk),
+                parameters.<Number>getTyped(RAM_DISK_MIN_FREE_SPACE_IN_MB).longValue(),
+                parameters.<Boolean>getTyped(RAM_DISK_FORCED)).orElse(null);
+    }
+
     private void validateDataFolders(Map<String, Object> parameters) {
         final String dataFolder = (String) parameters.get(DATA_FILE_FOLDER);
         final String commitLogFolder = (String) parameters.get(COMMIT_LOG_FOLDER);
@@ -225,7 +350,7 @@ public enum ServerStarter {
     private void validateFolder(String folderPath) {
         String currentUser = System.getProperty("user.name");
         final File folder = new File(folderPath);
-        if (!DEFAULT_ACHILLES_TEST_FOLDERS.contains(folderPath)) {
+        if (!isDefaultFolder(folderPath)) {
             ValidationHelper.validateTrue(folder.exists(), "Folder '%s' does not exist", folder.getAbsolutePath());
             ValidationHelper.validateTrue(folder.isDirectory(), "Folder '%s' is not a directory", folder.getAbsolutePath());
             ValidationHelper.validateTrue(folder.canRead(), "No read credential. Please grant read permission for the current user '%s' on folder '%s'", currentUser, folder.getAbsolutePath());
@@ -242,40 +367,78 @@ public enum ServerStarter {
         }
     }
 
+    private boolean restoreGoldenImageIfAvailable(TypedMap parameters, StartupReport startupReport) {
+        if (!parameters.<Boolean>getTyped(USE_GOLDEN_IMAGE)) {
+            return false;
+        }
+        if (!parameters.<Boolean>getTyped(CLEAN_CASSANDRA_DATA_FILES)) {
+            LOGGER.warn("Golden image is ignored because cleaning the data files at startup is disabled");
+            return false;
+        }
+
+        goldenImage = GoldenImage.of(parameters);
+        if (!goldenImage.isAvailable()) {
+            LOGGER.info("No golden image available for the current configuration and scripts, bootstrapping from scratch");
+            return false;
+        }
+
+        startupReport.time(StartupReport.CLEAN_DATA_FILES, () -> cleanCassandraDataFiles(parameters));
+        startupReport.time(StartupReport.RESTORE_GOLDEN_IMAGE, () -> goldenImage.restore(parameters));
+        parameters.put(GOLDEN_IMAGE_RESTORED, true);
+        return true;
+    }
+
     private void cleanCassandraDataFiles(TypedMap parameters) {
         if (parameters.<Boolean>getTyped(CLEAN_CASSANDRA_DATA_FILES)) {
             final ImmutableSet<String> dataFolders = ImmutableSet.<String>builder()
                     .add(parameters.<String>getTyped(DATA_FILE_FOLDER))
                     .add(parameters.<String>getTyped(COMMIT_LOG_FOLDER))
-                    .add(parameters.<String>getTyped(SAVED_CACHES_FOLDER)).build();
+                    .add(parameters.<String>getTyped(SAVED_CACHES_FOLDER))
+                    .add(parameters.<String>getTyped(HINTS_FOLDER))
+                    .add(parameters.<String>getTyped(CDC_RAW_FOLDER)).build();
             for (String dataFolder : dataFolders) {
-                File dataFolderFile = new File(dataFolder);
-                if (dataFolderFile.exists() && dataFolderFile.isDirectory()) {
-                    LOGGER.info("Cleaning up embedded Cassandra data directory '{}'", dataFolderFile.getAbsolutePath());
-                    try {
-                        FileUtils.cleanDirectory(dataFolderFile);
-                    } catch (IOException e) {
-                        throw new ApollonException(String.format("Cannot clean data folder %s", dataFolder));
-                    }
-                }
+                // The previous content is deleted in the background while Cassandra starts
+                DataFolderTrash.empty(new File(dataFolder));
             }
         }
     }
 
-    private void randomizePortsIfNeeded(TypedMap parameters) {
-        final Integer portThrift = extractAndValidatePort(Optional.ofNullable(parameters.get(CASSANDRA_THRIFT_PORT))
-                .orElseGet(ServerStarter::thriftRandomPort), CASSANDRA_THRIFT_PORT);
-        final Integer protCql = extractAndValidatePort(Optional.ofNullable(parameters.get(CASSANDRA_CQL_PORT))
-                .orElseGet(ServerStarter::cqlRandomPort), CASSANDRA_CQL_PORT);
-        final Integer storagePort = extractAndValidatePort(Optional.ofNullable(parameters.get(CASSANDRA_STORAGE_PORT))
-                .orElseGet(ServerStarter::storageRandomPort), CASSANDRA_STORAGE_PORT);
-        final Integer storageSSLPort = extractAndValidatePort(
-                Optional.ofNullable(parameters.get(CASSANDRA_STORAGE_SSL_PORT))
-                        .orElseGet(ServerStarter::storageSslRandomPort), CASSANDRA_STORAGE_SSL_PORT);
+    /**
+     * @return whether the daemon skips data directories scrubbing, saved caches loading and commit log replay:
+     * only the unsafe daemon can skip them, when the data, commit log and saved caches folders are empty
+     */
+    static boolean isFastBootstrap(TypedMap parameters) {
+        return parameters.<Boolean>getTyped(USE_UNSAFE_CASSANDRA_DAEMON)
+                && parameters.<Boolean>getTyped(FAST_BOOTSTRAP_ON_FRESH_DATA)
+                && isFreshDataDirectories(parameters);
+    }
 
-        final Integer jmxPort = extractAndValidatePort(Optional.ofNullable(parameters.get(CASSANDRA_JMX_PORT))
-                .orElseGet(ServerStarter::jxmRandomPort), CASSANDRA_JMX_PORT);
+    private static boolean isFreshDataDirectories(TypedMap parameters) {
+        return isEmptyFolder(parameters.getTyped(DATA_FILE_FOLDER))
+                && isEmptyFolder(parameters.getTyped(COMMIT_LOG_FOLDER))
+                && isEmptyFolder(parameters.getTyped(SAVED_CACHES_FOLDER));
+    }
+
+    private static boolean isEmptyFolder(String folderPath) {
+        final String[] content = new File(folderPath).list();
+        return content == null || content.length == 0;
+    }
 
+    private void randomizePortsIfNeeded(TypedMap parameters) {
+        final List<String> portNames = Arrays.asList(CASSANDRA_CQL_PORT, CASSANDRA_THRIFT_PORT, CASSANDRA_STORAGE_PORT,
+                CASSANDRA_STORAGE_SSL_PORT, CASSANDRA_JMX_PORT);
+        if (portNames.stream().anyMatch(portName -> parameters.get(portName) == null)) {
+            // Reserve all the ports in one step so that parallel JVMs never pick the same ones
+            releaseReservedPorts();
+            reservedPorts = PortFinder.reserveBlock(RESERVED_PORT_COUNT, PortFinder.LOOPBACK_HOSTNAMES,
+                    WorkerIsolation.firstPortToReserve(parameters.getTyped(WORKER_ID), RESERVED_PORT_COUNT));
+            LOGGER.debug("Reserved embedded Cassandra ports {}", reservedPorts);
+        }
+        final Integer protCql = reservedPortIfNeeded(parameters, CASSANDRA_CQL_PORT, 0);
+        final Integer portThrift = reservedPortIfNeeded(parameters, CASSANDRA_THRIFT_PORT, 1);
+        final Integer storagePort = reservedPortIfNeeded(parameters, CASSANDRA_STORAGE_PORT, 2);
+        final Integer storageSSLPort = reservedPortIfNeeded(parameters, CASSANDRA_STORAGE_SSL_PORT, 3);
+        final Integer jmxPort = reservedPortIfNeeded(parameters, CASSANDRA_JMX_PORT, 4);
 
         parameters.put(CASSANDRA_THRIFT_PORT, portThrift);
         parameters.put(CASSANDRA_CQL_PORT, protCql);
@@ -286,19 +449,78 @@ public enum ServerStarter {
         System.setProperty(ACHILLES_EMBEDDED_CASSANDRA_RPC_ADDRESS, parameters.getTyped(RPC_ADDRESS));
         System.setProperty(ACHILLES_EMBEDDED_CASSANDRA_BROADCAST_ADDRESS, parameters.getTyped(BROADCAST_ADDRESS));
         System.setProperty(ACHILLES_EMBEDDED_CASSANDRA_BROADCAST_RPC_ADDRESS, parameters.getTyped(BROADCAST_RPC_ADDRESS));
+        if (parameters.containsKey(SEEDS)) {
+            System.setProperty(ACHILLES_EMBEDDED_CASSANDRA_SEEDS, parameters.getTyped(SEEDS));
+        }
+        if (parameters.containsKey(ENDPOINT_SNITCH)) {
+            System.setProperty(ACHILLES_EMBEDDED_CASSANDRA_ENDPOINT_SNITCH, parameters.getTyped(ENDPOINT_SNITCH));
+        }
 
         System.setProperty(ACHILLES_EMBEDDED_CASSANDRA_THRIFT_PORT, portThrift.toString());
         System.setProperty(ACHILLES_EMBEDDED_CASSANDRA_CQL_PORT, protCql.toString());
         System.setProperty(ACHILLES_EMBEDDED_CASSANDRA_STORAGE_PORT, storagePort.toString());
         System.setProperty(ACHILLES_EMBEDDED_CASSANDRA_STORAGE_SSL_PORT, storageSSLPort.toString());
 
-        System.setProperty("cassandra.jmx.local.port", jmxPort.toString());
+        if (Boolean.getBoolean(InJvmCluster.DISABLE_MBEAN_REGISTRATION_PROPERTY)) {
+            // Without the MBeans of Cassandra, e.g. for the nodes of an in-JVM cluster, the JMX connector has nothing to serve
+            System.clearProperty("cassandra.jmx.local.port");
+        } else {
+            System.setProperty("cassandra.jmx.local.port", jmxPort.toString());
+        }
         System.setProperty("cassandra.skip_wait_for_gossip_to_settle", "0");
 
         ServerStarter.cqlPort = protCql;
         ServerStarter.thriftPort = portThrift;
     }
 
+    private void configureProfileAndOverrides(TypedMap parameters) {
+        final ConfigProfile profile = parameters.getTyped(CONFIG_PROFILE);
+        if (profile != null) {
+            LOGGER.info(" Embedded Cassandra configuration profile = {}", profile);
+            System.setProperty(ACHILLES_EMBEDDED_CASSANDRA_CONFIG_PROFILE, profile.name());
+        } else {
+            System.clearProperty(ACHILLES_EMBEDDED_CASSANDRA_CONFIG_PROFILE);
+        }
+
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(ACHILLES_EMBEDDED_CASSANDRA_CONFIG_OVERRIDE_PREFIX))
+                .forEach(System::clearProperty);
+        final Map<String, Object> configOverrides = new LinkedHashMap<>();
+        if (parameters.containsKey(IN_MEMORY_MEMTABLE_CEILING_IN_MB)) {
+            configOverrides.putAll(InMemoryStorage.configOverrides(parameters.getTyped(IN_MEMORY_MEMTABLE_CEILING_IN_MB)));
+        }
+        // Explicit overrides win over the in-memory storage settings
+        configOverrides.putAll(parameters.getTypedOr(CONFIG_OVERRIDES, new HashMap<>()));
+        final Properties overrides = new Properties();
+        configOverrides.forEach((setting, value) -> overrides.setProperty(ACHILLES_EMBEDDED_CASSANDRA_CONFIG_OVERRIDE_PREFIX + setting, String.valueOf(value)));
+        try {
+            // Fail fast on unknown settings or invalid values rather than in the middle of the daemon startup
+            ApollonCassandraConfig.applyOverrides(new Config(), overrides);
+        } catch (IllegalArgumentException e) {
+            throw new ApollonException("Invalid Cassandra configuration override: " + e.getMessage(), e);
+        }
+        overrides.stringPropertyNames().forEach(name -> System.setProperty(name, overrides.getProperty(name)));
+    }
+
+    private Integer reservedPortIfNeeded(TypedMap parameters, String portName, int reservedPortIndex) {
+        return extractAndValidatePort(Optional.ofNullable(parameters.get(portName))
+                .orElseGet(() -> reservedPorts.get(reservedPortIndex)), portName);
+    }
+
+    private static void releaseReservedPorts() {
+        if (reservedPorts != null) {
+            reservedPorts.close();
+            reservedPorts = null;
+        }
+    }
+
+    private static void deleteRamDiskFolders() {
+        if (ramDiskFolders != null) {
+            ramDiskFolders.delete();
+            ramDiskFolders = null;
+        }
+    }
+
     private Integer extractAndValidatePort(Object port, String portLabel) {
         ValidationHelper.validateTrue(port instanceof Integer, "The provided '%s' port should be an integer", portLabel);
         ValidationHelper.validateTrue((Integer) port > 0, "The provided '%s' port should positive", portLabel);
@@ -306,11 +528,11 @@ public enum ServerStarter {
 
     }
 
-    private String createTriggersFolder() {
+    private String createTriggersFolder(String workerId) {
         LOGGER.trace("Create triggers folder");
-        final File triggersDir = new File(DEFAULT_ACHILLES_TEST_TRIGGERS_FOLDER);
+        final File triggersDir = new File(WorkerIsolation.workerFolder(DEFAULT_ACHILLES_TEST_TRIGGERS_FOLDER, workerId));
         if (!triggersDir.exists()) {
-            triggersDir.mkdir();
+            triggersDir.mkdirs();
         }
         return triggersDir.getAbsolutePath();
     }
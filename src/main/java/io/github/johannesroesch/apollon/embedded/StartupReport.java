@@ -0,0 +1,129 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time spent in each phase of the embedded Cassandra server startup.
+ * <br/>
+ * Phases are recorded in execution order. A phase executed several times accumulates its durations.
+ * <br/>
+ * <pre class="code"><code class="java">
+ *
+ * CassandraEmbeddedServer server = CassandraEmbeddedServerBuilder.builder().buildServer();
+ *
+ * StartupReport report = server.getStartupReport();
+ * assertTrue(report.getTotalMillis() &lt; 15000);
+ * long schemaLoading = report.getPhaseMillis(StartupReport.LOAD_SCHEMA);
+ * </code></pre>
+ */
+public class StartupReport {
+
+    public static final String PLACE_RAM_DISK_FOLDERS = "placeRamDiskFolders";
+    public static final String VALIDATE_DATA_FOLDERS = "validateDataFolders";
+    public static final String CLEAN_DATA_FILES = "cleanCassandraDataFiles";
+    public static final String RESTORE_GOLDEN_IMAGE = "restoreGoldenImage";
+    public static final String RANDOMIZE_PORTS = "randomizePortsIfNeeded";
+    public static final String DAEMON_STARTUP = "daemonStartup";
+    public static final String LOAD_SCHEMA = "loadSchema";
+    public static final String SCRUB_DATA_DIRECTORIES = "scrubDataDirectories";
+    public static final String LOAD_CACHES = "loadRowAndKeyCache";
+    public static final String COMMIT_LOG_RECOVERY = "recoverCommitLog";
+    public static final String INIT_SERVER = "initServer";
+    public static final String NATIVE_TRANSPORT_START = "startNativeTransport";
+    public static final String NATIVE_TRANSPORT_READY = "awaitNativeTransport";
+    public static final String SESSION_CREATION = "sessionCreation";
+    public static final String SAVE_GOLDEN_IMAGE = "saveGoldenImage";
+    public static final String SCRIPT_PREFIX = "script:";
+    public static final String FIXTURE_PREFIX = "fixture:";
+
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    private volatile long totalNanos = -1L;
+    private volatile MemoryFootprint memoryFootprint;
+
+    void time(String phase, Runnable action) {
+        final long start = System.nanoTime();
+        try {
+            action.run();
+        } finally {
+            record(phase, start);
+        }
+    }
+
+    synchronized void record(String phase, long phaseStartNanos) {
+        phaseNanos.merge(phase, System.nanoTime() - phaseStartNanos, Long::sum);
+    }
+
+    long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    void complete() {
+        totalNanos = System.nanoTime() - startNanos;
+        memoryFootprint = MemoryFootprint.measure();
+    }
+
+    /**
+     * @return heap, direct memory and threads used by the JVM at the end of the startup, or null if not completed yet
+     */
+    public MemoryFootprint getMemoryFootprint() {
+        return memoryFootprint;
+    }
+
+    /**
+     * @return duration in milliseconds of each recorded phase, in execution order
+     */
+    public synchronized Map<String, Long> getPhases() {
+        final Map<String, Long> phases = new LinkedHashMap<>();
+        phaseNanos.forEach((phase, nanos) -> phases.put(phase, TimeUnit.NANOSECONDS.toMillis(nanos)));
+        return Collections.unmodifiableMap(phases);
+    }
+
+    /**
+     * @param phase name of the phase
+     * @return duration in milliseconds of the phase or 0 if the phase has not been executed
+     */
+    public synchronized long getPhaseMillis(String phase) {
+        return TimeUnit.NANOSECONDS.toMillis(phaseNanos.getOrDefault(phase, 0L));
+    }
+
+    /**
+     * @return total startup duration in milliseconds
+     */
+    public long getTotalMillis() {
+        return totalNanos < 0 ? elapsedMillis() : TimeUnit.NANOSECONDS.toMillis(totalNanos);
+    }
+
+    /**
+     * @return single line report, e.g. <em>total=8123ms validateDataFolders=3ms loadSchema=1250ms ...</em>
+     */
+    public String toLogLine() {
+        final StringBuilder line = new StringBuilder("total=").append(getTotalMillis()).append("ms");
+        getPhases().forEach((phase, millis) -> line.append(' ').append(phase).append('=').append(millis).append("ms"));
+        return line.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "StartupReport{" + toLogLine() + "}";
+    }
+}
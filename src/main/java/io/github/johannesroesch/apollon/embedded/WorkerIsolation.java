@@ -0,0 +1,129 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Isolation of the parallel test workers of a build, e.g. Surefire forks with <em>forkCount=1C</em>
+ * or Gradle test workers with <em>maxParallelForks</em>.
+ * <br/>
+ * The worker id is taken from the first defined system property among:
+ * <ul>
+ *     <li><strong>apollon.worker.id</strong>: explicit id, e.g. <em>&lt;apollon.worker.id&gt;${surefire.forkNumber}&lt;/apollon.worker.id&gt;</em>
+ *     in the <em>systemPropertyVariables</em> of Surefire</li>
+ *     <li><strong>org.gradle.test.worker</strong>: set by Gradle in each test worker</li>
+ * </ul>
+ * Surefire does not expose the fork number to the forked JVMs, <em>${surefire.forkNumber}</em> is only
+ * replaced in its own configuration. In a Surefire fork without <strong>apollon.worker.id</strong>, the id
+ * falls back to the id of the process, <em>pid-&lt;pid&gt;</em>: the forks are isolated but each of them
+ * gets new folders. Configure <strong>apollon.worker.id</strong> as above to reuse the folders of a fork
+ * from one build to the next.
+ * <br/>
+ * When a worker id is defined, the default folders <em>target/cassandra_embedded/xxx</em> become
+ * <em>target/cassandra_embedded/worker-&lt;id&gt;/xxx</em> and the port reservation starts at a
+ * worker specific offset. Without a worker id, the default folders are unchanged.
+ */
+final class WorkerIsolation {
+
+    static final String WORKER_ID_PROPERTY = "apollon.worker.id";
+    static final List<String> WORKER_ID_PROPERTIES = Arrays.asList(WORKER_ID_PROPERTY, "org.gradle.test.worker");
+    // Set by Surefire in each forked JVM
+    static final List<String> SUREFIRE_FORK_PROPERTIES = Arrays.asList("surefire.test.class.path", "surefire.real.class.path");
+
+    private static final String DEFAULT_FOLDERS_ROOT = "target/cassandra_embedded/";
+    private static final Pattern WORKER_FOLDER = Pattern.compile("^" + Pattern.quote(DEFAULT_FOLDERS_ROOT) + "worker-[^/]+/");
+    private static final Pattern INVALID_FOLDER_CHARACTERS = Pattern.compile("[^A-Za-z0-9_.-]");
+    private static final int PORT_OFFSET_SLOTS = 64;
+
+    private WorkerIsolation() {
+    }
+
+    /**
+     * @return the id of the current test worker, or null when not running in a parallel worker
+     */
+    static String detectWorkerId() {
+        final String workerId = WORKER_ID_PROPERTIES.stream()
+                .map(System::getProperty)
+                .filter(Objects::nonNull)
+                .filter(id -> isNotBlank(id) && !id.startsWith("${"))
+                .findFirst()
+                .orElse(null);
+        if (workerId == null && SUREFIRE_FORK_PROPERTIES.stream().anyMatch(property -> System.getProperty(property) != null)) {
+            return "pid-" + processId();
+        }
+        return workerId;
+    }
+
+    /**
+     * @return the id of the current process, from the <em>pid@hostname</em> name of the runtime
+     */
+    static String processId() {
+        final String runtimeName = ManagementFactory.getRuntimeMXBean().getName();
+        final int at = runtimeName.indexOf('@');
+        return at > 0 ? runtimeName.substring(0, at) : runtimeName;
+    }
+
+    /**
+     * @param defaultFolder one of the default folders, below <em>target/cassandra_embedded/</em>
+     * @param workerId      id of the test worker
+     * @return the folder of the worker
+     */
+    static String workerFolder(String defaultFolder, String workerId) {
+        if (workerId == null || !defaultFolder.startsWith(DEFAULT_FOLDERS_ROOT)) {
+            return defaultFolder;
+        }
+        return DEFAULT_FOLDERS_ROOT + "worker-" + INVALID_FOLDER_CHARACTERS.matcher(workerId).replaceAll("_") + "/"
+                + defaultFolder.substring(DEFAULT_FOLDERS_ROOT.length());
+    }
+
+    /**
+     * @return the default folder of which <em>folder</em> is the worker folder, or <em>folder</em> itself
+     */
+    static String sharedFolder(String folder) {
+        return WORKER_FOLDER.matcher(folder).replaceFirst(DEFAULT_FOLDERS_ROOT);
+    }
+
+    /**
+     * Spread the workers over the reserved port range so that they do not scan and lock the same ports
+     *
+     * @param workerId  id of the test worker, or null
+     * @param blockSize number of ports reserved by each worker
+     * @return the first port to try to reserve
+     */
+    static int firstPortToReserve(String workerId, int blockSize) {
+        if (workerId == null) {
+            return PortFinder.RESERVED_PORTS_START;
+        }
+        final int slot = Math.floorMod(workerNumber(workerId), PORT_OFFSET_SLOTS);
+        return PortFinder.RESERVED_PORTS_START + slot * blockSize;
+    }
+
+    private static int workerNumber(String workerId) {
+        try {
+            return Integer.parseInt(workerId.trim());
+        } catch (NumberFormatException e) {
+            return workerId.hashCode();
+        }
+    }
+}
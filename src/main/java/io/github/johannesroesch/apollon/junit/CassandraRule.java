@@ -30,13 +30,18 @@ public class CassandraRule extends ExternalResource {
     private final CassandraShutDownHook cassandraShutDownHook = new CassandraShutDownHook();
     private final Consumer<CqlSession> doBefore;
     private final Consumer<CqlSession> doAfter;
+    private final boolean resetDirtyTables;
+    private final String restoredSnapshot;
     private CassandraEmbeddedServer server;
     private CqlSession session;
 
-    private CassandraRule(final TypedMap parameters, final Consumer<CqlSession> doBefore, final Consumer<CqlSession> doAfter) {
+    private CassandraRule(final TypedMap parameters, final Consumer<CqlSession> doBefore, final Consumer<CqlSession> doAfter,
+                          final boolean resetDirtyTables, final String restoredSnapshot) {
         this.cassandraParams = parameters;
         this.doBefore = doBefore;
         this.doAfter = doAfter;
+        this.resetDirtyTables = resetDirtyTables;
+        this.restoredSnapshot = restoredSnapshot;
     }
 
     public static Builder builder() {
@@ -53,6 +58,7 @@ public class CassandraRule extends ExternalResource {
                 .withParams(cassandraParams)
                 .withShutdownHook(cassandraShutDownHook)
                 .cleanDataFilesAtStartup(true)
+                .trackDirtyTables(resetDirtyTables)
                 .buildServer();
     }
 
@@ -64,12 +70,25 @@ public class CassandraRule extends ExternalResource {
     protected void before() {
         this.server = buildServer();
         this.session = this.server.getNativeSession();
+        if (restoredSnapshot != null && !server.hasKeyspaceSnapshot(getKeyspaceName(), restoredSnapshot)) {
+            server.snapshotKeyspace(getKeyspaceName(), restoredSnapshot);
+        }
         doBefore.accept(session);
     }
 
     @Override
     protected void after() {
         doAfter.accept(session);
+        if (resetDirtyTables) {
+            server.resetDirtyTables();
+        }
+        if (restoredSnapshot != null) {
+            server.restoreKeyspaceSnapshot(getKeyspaceName(), restoredSnapshot);
+        }
+    }
+
+    private String getKeyspaceName() {
+        return cassandraParams.getTyped(CassandraEmbeddedConfigParameters.DEFAULT_KEYSPACE_NAME);
     }
 
     public void shutdown() {
@@ -83,12 +102,14 @@ public class CassandraRule extends ExternalResource {
         private Consumer<CqlSession> doAfter = s -> {
         };
         private TypedMap parameters = CassandraEmbeddedConfigParameters.getDefaultParameters();
+        private boolean resetDirtyTables = false;
+        private String restoredSnapshot;
 
         private Builder() {
         }
 
         public CassandraRule build() {
-            return new CassandraRule(parameters, doBefore, doAfter);
+            return new CassandraRule(parameters, doBefore, doAfter, resetDirtyTables, restoredSnapshot);
         }
 
         public Builder doBeforeTest(final Consumer<CqlSession> doBefore) {
@@ -101,6 +122,31 @@ public class CassandraRule extends ExternalResource {
             return this;
         }
 
+        /**
+         * Truncate the tables written by each test after its execution. Only the written tables
+         * are truncated, they are tracked by the embedded Cassandra server. The seed rows of a written
+         * table are truncated too, see {@link #restoreSnapshotAfterEachTest(String)} to keep them
+         *
+         * @return Builder
+         */
+        public Builder resetDirtyTablesAfterEachTest() {
+            this.resetDirtyTables = true;
+            return this;
+        }
+
+        /**
+         * Restore the default keyspace from the given snapshot after each test. The snapshot is taken
+         * before the first test if it does not exist yet, i.e. once the startup scripts and fixtures are applied,
+         * unless it has already been taken with {@link CassandraEmbeddedServer#snapshotKeyspace(String, String)}
+         *
+         * @param snapshotName name of the snapshot
+         * @return Builder
+         */
+        public Builder restoreSnapshotAfterEachTest(final String snapshotName) {
+            this.restoredSnapshot = snapshotName;
+            return this;
+        }
+
         public Builder withParameters(final TypedMap parameters) {
             this.parameters = CassandraEmbeddedConfigParameters.mergeWithDefaultParameters(parameters);
             return this;
@@ -0,0 +1,80 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BuildServerAsyncTest {
+
+    private static final long TIMEOUT_IN_SECONDS = 120;
+
+    @Test
+    public void should_complete_with_the_initialized_server() throws Exception {
+        final CassandraEmbeddedServer server = CassandraEmbeddedServerBuilder.builder()
+                .withScript("script/in_process_seed.cql")
+                .buildServerAsync()
+                .get(TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+
+        assertEquals("john", server.getNativeSession().execute("SELECT name FROM in_process.users WHERE id = 1").one().getString("name"));
+        assertTrue(server.getStartupReport().elapsedMillis() > 0);
+    }
+
+    @Test
+    public void should_complete_exceptionally_when_a_script_fails() throws Exception {
+        startServer();
+
+        final Throwable failure = failureOf(CassandraEmbeddedServerBuilder.builder()
+                .withScript("script/in_process_error.cql")
+                .buildServerAsync());
+
+        assertTrue(failure.toString(), failure.getMessage().contains("missing_table"));
+    }
+
+    @Test
+    public void should_complete_exceptionally_when_the_startup_fails() throws Exception {
+        startServer();
+
+        // The embedded server already listens to another CQL port
+        final Throwable failure = failureOf(CassandraEmbeddedServerBuilder.builder()
+                .withCQLPort(1)
+                .buildServerAsync());
+
+        assertTrue(failure.toString(), failure instanceof IllegalArgumentException);
+    }
+
+    private static void startServer() throws Exception {
+        CassandraEmbeddedServerBuilder.builder().buildServerAsync().get(TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static Throwable failureOf(CompletableFuture<CassandraEmbeddedServer> futureServer) throws Exception {
+        try {
+            futureServer.get(TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+            fail("The server startup should fail");
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+}
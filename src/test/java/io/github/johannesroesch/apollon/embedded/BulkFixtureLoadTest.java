@@ -0,0 +1,74 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import com.datastax.oss.driver.api.core.cql.Row;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BulkFixtureLoadTest {
+
+    private static CassandraEmbeddedServer server;
+
+    @BeforeClass
+    public static void startServer() {
+        server = CassandraEmbeddedServerBuilder.builder()
+                .cleanDataFilesAtStartup(true)
+                .withScript("script/bulk_fixture_schema.cql")
+                .withBulkFixture("bulk_fixture.users_a", "fixture/users.csv")
+                .withBulkFixture("bulk_fixture.users_b", "fixture/users.csv")
+                .buildServer();
+    }
+
+    @Test
+    public void should_load_the_same_startup_fixture_into_two_tables() {
+        for (String table : new String[]{"users_a", "users_b"}) {
+            final Row helen = server.getNativeSession().execute("SELECT name, nickname FROM bulk_fixture." + table + " WHERE id = 2").one();
+            assertEquals("helen", helen.getString("nickname"));
+        }
+    }
+
+    @Test
+    public void should_load_empty_csv_cells_as_null_and_quoted_ones_as_empty_text() {
+        final long rows = new BulkFixtureLoader("bulk_fixture").load("users", "fixture/users.csv");
+
+        assertEquals(2, rows);
+        final Row john = selectUser(1);
+        assertEquals("john", john.getString("name"));
+        assertNull(john.getString("nickname"));
+        final Row helen = selectUser(2);
+        assertEquals("", helen.getString("name"));
+        assertEquals("helen", helen.getString("nickname"));
+    }
+
+    @Test
+    public void should_load_json_objects() {
+        final long rows = new BulkFixtureLoader("bulk_fixture").load("bulk_fixture.users", "fixture/users.json");
+
+        assertEquals(2, rows);
+        assertEquals("paul", selectUser(3).getString("name"));
+        assertNull(selectUser(3).getString("nickname"));
+        assertEquals("anna", selectUser(4).getString("name"));
+    }
+
+    private static Row selectUser(int id) {
+        return server.getNativeSession().execute("SELECT name, nickname FROM bulk_fixture.users WHERE id = " + id).one();
+    }
+}
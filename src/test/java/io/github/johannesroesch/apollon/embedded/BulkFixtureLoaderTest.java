@@ -0,0 +1,141 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import io.github.johannesroesch.apollon.exception.ApollonException;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.ListType;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.schema.ColumnMetadata;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BulkFixtureLoaderTest {
+
+    private static final TableMetadata USERS = TableMetadata.builder("ks", "users")
+            .partitioner(Murmur3Partitioner.instance)
+            .addPartitionKeyColumn("id", Int32Type.instance)
+            .addRegularColumn("name", UTF8Type.instance)
+            .addRegularColumn("scores", ListType.getInstance(Int32Type.instance, true))
+            .build();
+
+    private static final ColumnMetadata ID = USERS.getColumn(ByteBufferUtil.bytes("id"));
+    private static final ColumnMetadata NAME = USERS.getColumn(ByteBufferUtil.bytes("name"));
+    private static final ColumnMetadata SCORES = USERS.getColumn(ByteBufferUtil.bytes("scores"));
+
+    @Test
+    public void testSplitCsvLine() {
+        assertEquals(Arrays.asList("1", "john", null, "[1, 2]"), BulkFixtureLoader.splitCsvLine("1, john,,\"[1, 2]\""));
+        assertEquals(Arrays.asList("say \"hello\"", "x"), BulkFixtureLoader.splitCsvLine("\"say \"\"hello\"\"\",x"));
+        assertEquals(Arrays.asList("1", "", null), BulkFixtureLoader.splitCsvLine("1,\"\", "));
+        assertEquals(Arrays.asList(" a ", "b c", "  "), BulkFixtureLoader.splitCsvLine(" \" a \" , b c ,\"  \""));
+    }
+
+    @Test(expected = ApollonException.class)
+    public void testRejectTwoFixturesForTheSameTable() {
+        CassandraEmbeddedServerBuilder.builder()
+                .withBulkFixture("users", "fixture/users.csv")
+                .withBulkFixture("other_users", "fixture/users.csv")
+                .withBulkFixture("users", "fixture/users.json");
+    }
+
+    @Test
+    public void testFromCsvValue() {
+        assertEquals(ByteBufferUtil.bytes(1), BulkFixtureLoader.fromCsvValue(ID, "1"));
+        assertEquals(ByteBufferUtil.bytes("john"), BulkFixtureLoader.fromCsvValue(NAME, "john"));
+        assertEquals(Arrays.asList(1, 2), SCORES.type.compose(BulkFixtureLoader.fromCsvValue(SCORES, "[1, 2]")));
+    }
+
+    @Test
+    public void testEmptyCsvCells() {
+        assertNull(BulkFixtureLoader.fromCsvValue(NAME, null));
+        assertNull(BulkFixtureLoader.fromCsvValue(SCORES, null));
+        assertEquals(ByteBufferUtil.EMPTY_BYTE_BUFFER, BulkFixtureLoader.fromCsvValue(NAME, ""));
+    }
+
+    @Test
+    public void testJsonArray() throws Exception {
+        final BulkFixtureLoader.JsonRows rows = new BulkFixtureLoader.JsonRows(new StringReader(
+                "[{\"id\": 1, \"name\": \"john\", \"scores\": [1, 2]},\n {\"id\": 2, \"name\": null}]"), USERS);
+
+        final Map<ColumnMetadata, ByteBuffer> first = rows.next();
+        assertEquals(ByteBufferUtil.bytes(1), first.get(ID));
+        assertEquals(ByteBufferUtil.bytes("john"), first.get(NAME));
+        assertEquals(Arrays.asList(1, 2), SCORES.type.compose(first.get(SCORES)));
+
+        final Map<ColumnMetadata, ByteBuffer> second = rows.next();
+        assertEquals(ByteBufferUtil.bytes(2), second.get(ID));
+        assertTrue(second.containsKey(NAME));
+        assertNull(second.get(NAME));
+        assertFalse(second.containsKey(SCORES));
+        assertFalse(rows.hasNext());
+    }
+
+    @Test
+    public void testJsonObjectPerLine() throws Exception {
+        final BulkFixtureLoader.JsonRows rows = new BulkFixtureLoader.JsonRows(new StringReader(
+                "{\"id\": 1}\n\n{\"ID\": 2}\n"), USERS);
+
+        assertEquals(ByteBufferUtil.bytes(1), rows.next().get(ID));
+        assertEquals(ByteBufferUtil.bytes(2), rows.next().get(ID));
+        assertFalse(rows.hasNext());
+    }
+
+    @Test(expected = ApollonException.class)
+    public void testJsonUnknownColumn() throws Exception {
+        new BulkFixtureLoader.JsonRows(new StringReader("[{\"id\": 1, \"age\": 30}]"), USERS).next();
+    }
+
+    @Test
+    public void testImportFailedFolders() {
+        final File folder = new File("ks/users");
+        try {
+            BulkFixtureLoader.importSSTables(USERS, folder, (metadata, tableFolder) -> Collections.singletonList(tableFolder.getPath()));
+            fail("The import should fail");
+        } catch (ApollonException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Cannot import the SSTables of ks.users from [" + folder.getPath() + "]"));
+        }
+    }
+
+    @Test
+    public void testImportError() {
+        try {
+            BulkFixtureLoader.importSSTables(USERS, new File("ks/users"), (metadata, tableFolder) -> {
+                throw new IllegalStateException("Corrupted SSTable");
+            });
+            fail("The import should fail");
+        } catch (ApollonException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Corrupted SSTable"));
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
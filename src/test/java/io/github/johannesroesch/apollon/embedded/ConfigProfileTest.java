@@ -0,0 +1,54 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import org.apache.cassandra.config.Config;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static io.github.johannesroesch.apollon.embedded.ApollonCassandraConfig.ACHILLES_EMBEDDED_CASSANDRA_CONFIG_OVERRIDE_PREFIX;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ConfigProfileTest {
+
+    @Test
+    public void should_apply_overrides_after_profile() {
+        final Config config = new Config();
+        ConfigProfile.LOW_MEMORY.apply(config);
+
+        final Properties overrides = new Properties();
+        overrides.setProperty(ACHILLES_EMBEDDED_CASSANDRA_CONFIG_OVERRIDE_PREFIX + "memtable_heap_space_in_mb", "32");
+        overrides.setProperty(ACHILLES_EMBEDDED_CASSANDRA_CONFIG_OVERRIDE_PREFIX + "key_cache_size_in_mb", "null");
+        overrides.setProperty(ACHILLES_EMBEDDED_CASSANDRA_CONFIG_OVERRIDE_PREFIX + "commitlog_sync", "batch");
+        overrides.setProperty("unrelated.property", "value");
+        ApollonCassandraConfig.applyOverrides(config, overrides);
+
+        assertEquals(Integer.valueOf(32), config.memtable_heap_space_in_mb);
+        assertNull(config.key_cache_size_in_mb);
+        assertEquals(Config.CommitLogSync.batch, config.commitlog_sync);
+        assertEquals(Integer.valueOf(16), config.memtable_offheap_space_in_mb);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_unknown_setting() {
+        final Properties overrides = new Properties();
+        overrides.setProperty(ACHILLES_EMBEDDED_CASSANDRA_CONFIG_OVERRIDE_PREFIX + "memtable_size", "32");
+        ApollonCassandraConfig.applyOverrides(new Config(), overrides);
+    }
+}
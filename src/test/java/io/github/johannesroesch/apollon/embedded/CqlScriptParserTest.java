@@ -0,0 +1,100 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CqlScriptParserTest {
+
+    @Test
+    public void testMultiLineStatement() {
+        final List<String> statements = parse(
+                "CREATE TABLE users(",
+                "id int PRIMARY KEY,",
+                "name text);",
+                "INSERT INTO users(id, name) VALUES(1, 'john');");
+
+        assertEquals(Arrays.asList("CREATE TABLE users( id int PRIMARY KEY, name text);",
+                "INSERT INTO users(id, name) VALUES(1, 'john');"), statements);
+    }
+
+    @Test
+    public void testBatchStatement() {
+        final List<String> statements = parse(
+                "BEGIN BATCH",
+                "INSERT INTO users(id) VALUES(1);",
+                "INSERT INTO users(id) VALUES(2);",
+                "APPLY BATCH;");
+
+        assertEquals(Arrays.asList(" BEGIN BATCH INSERT INTO users(id) VALUES(1); INSERT INTO users(id) VALUES(2); APPLY BATCH;"), statements);
+    }
+
+    @Test
+    public void testCodeBlock() {
+        final List<String> statements = parse(
+                "CREATE FUNCTION twice(input int) RETURNS NULL ON NULL INPUT RETURNS int LANGUAGE java",
+                "AS $$",
+                "return input * 2;",
+                "$$;");
+
+        assertEquals(Arrays.asList("CREATE FUNCTION twice(input int) RETURNS NULL ON NULL INPUT RETURNS int LANGUAGE java AS $$return input * 2;$$;"), statements);
+    }
+
+    @Test
+    public void testStatementStartLine() {
+        final CqlScriptParser parser = new CqlScriptParser();
+
+        assertNull(parser.accept("CREATE TABLE users(", 1));
+        assertNotNull(parser.accept("id int PRIMARY KEY);", 3));
+        assertEquals(1, parser.getCompletedStatementLine());
+
+        parser.accept("INSERT INTO users(id) VALUES(1);", 5);
+        assertEquals(5, parser.getCompletedStatementLine());
+    }
+
+    @Test
+    public void testDmlDetection() {
+        assertTrue(PipelinedStatementExecutor.isDml("INSERT INTO users(id) VALUES(1);"));
+        assertTrue(PipelinedStatementExecutor.isDml("  update users SET name = 'john' WHERE id = 1;"));
+        assertTrue(PipelinedStatementExecutor.isDml(" BEGIN BATCH INSERT INTO users(id) VALUES(1); APPLY BATCH;"));
+        assertFalse(PipelinedStatementExecutor.isDml("CREATE TABLE users(id int PRIMARY KEY);"));
+        assertFalse(PipelinedStatementExecutor.isDml("SELECT * FROM users;"));
+    }
+
+    private List<String> parse(String... lines) {
+        final CqlScriptParser parser = new CqlScriptParser();
+        final List<String> statements = new ArrayList<>();
+        for (String line : lines) {
+            final SimpleStatement statement = parser.accept(line);
+            if (statement != null) {
+                statements.add(statement.getQuery());
+            }
+        }
+        return statements;
+    }
+}
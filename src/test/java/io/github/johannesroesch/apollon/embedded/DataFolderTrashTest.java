@@ -0,0 +1,50 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DataFolderTrashTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void should_empty_folder_and_delete_its_content_in_the_background() throws Exception {
+        final File folder = temporaryFolder.newFolder("data");
+        final File table = new File(folder, "keyspace/table-1");
+        assertTrue(table.mkdirs());
+        Files.write(new File(table, "nb-1-big-Data.db").toPath(), new byte[1024]);
+        // Left by a previous JVM
+        assertTrue(new File(temporaryFolder.getRoot(), ".data" + DataFolderTrash.TRASH_SUFFIX + "previous").mkdir());
+
+        DataFolderTrash.empty(folder);
+
+        assertArrayEquals(new String[0], folder.list());
+        assertTrue(DataFolderTrash.awaitDeletions(10, TimeUnit.SECONDS));
+        assertArrayEquals(new String[]{"data"}, temporaryFolder.getRoot().list());
+    }
+}
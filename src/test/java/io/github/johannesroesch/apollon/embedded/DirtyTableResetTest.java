@@ -0,0 +1,49 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DirtyTableResetTest {
+
+    private static CassandraEmbeddedServer server;
+
+    @BeforeClass
+    public static void startServer() {
+        server = CassandraEmbeddedServerBuilder.builder()
+                .cleanDataFilesAtStartup(true)
+                .withScript("script/dirty_tables_seed.cql")
+                .trackDirtyTables(true)
+                .buildServer();
+    }
+
+    @Test
+    public void should_truncate_only_the_written_tables_with_their_seed_rows() {
+        final CqlSession session = server.getNativeSession();
+        session.execute("INSERT INTO dirty_tables.users(id, name) VALUES(2, 'helen')");
+
+        assertEquals(1, server.resetDirtyTables());
+
+        assertEquals(0, session.execute("SELECT * FROM dirty_tables.users").all().size());
+        assertEquals(2, session.execute("SELECT * FROM dirty_tables.countries").all().size());
+        assertEquals(0, server.resetDirtyTables());
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static io.github.johannesroesch.apollon.embedded.CassandraEmbeddedConfigParameters.USE_UNSAFE_CASSANDRA_DAEMON;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FastBootstrapTest {
+
+    @Test
+    public void should_skip_the_recovery_phases_on_fresh_folders_only() {
+        final CassandraEmbeddedServer server = CassandraEmbeddedServerBuilder.builder()
+                .cleanDataFilesAtStartup(true)
+                .useUnsafeCassandraDeamon()
+                .buildServer();
+
+        final Map<String, Long> phases = server.getStartupReport().getPhases();
+        assertTrue(phases.toString(), phases.containsKey(StartupReport.LOAD_SCHEMA));
+        assertFalse(phases.toString(), phases.containsKey(StartupReport.LOAD_CACHES));
+        assertFalse(phases.toString(), phases.containsKey(StartupReport.COMMIT_LOG_RECOVERY));
+
+        // The folders written by the server would make the next startup go through the full bootstrap path
+        final TypedMap parameters = CassandraEmbeddedConfigParameters.getDefaultParameters();
+        parameters.put(USE_UNSAFE_CASSANDRA_DAEMON, true);
+        assertFalse(ServerStarter.isFastBootstrap(parameters));
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import io.github.johannesroesch.apollon.junit.CassandraRule;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collection;
+
+import static io.github.johannesroesch.apollon.embedded.CassandraEmbeddedConfigParameters.*;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GoldenImageSaveTest {
+
+    @ClassRule
+    public static final CassandraRule cassandraRule = CassandraRule.builder().build();
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void should_save_the_image_from_a_snapshot_of_the_live_tables() {
+        final File dataFolder = new File(DatabaseDescriptor.getAllDataFileLocations()[0]);
+        final TypedMap parameters = CassandraEmbeddedConfigParameters.getDefaultParameters();
+        parameters.put(DATA_FILE_FOLDER, dataFolder.getAbsolutePath());
+        parameters.put(GOLDEN_IMAGE_FOLDER, temporaryFolder.getRoot().getAbsolutePath());
+
+        final GoldenImage image = GoldenImage.of(parameters);
+        image.complete(parameters, 1000L);
+
+        assertTrue(image.isAvailable());
+        final File imageFolder = new File(temporaryFolder.getRoot(), GoldenImage.computeKey(parameters));
+        final Collection<File> imageFiles = FileUtils.listFiles(new File(imageFolder, "data"), TrueFileFilter.INSTANCE, TrueFileFilter.INSTANCE);
+        assertTrue(imageFiles.stream().anyMatch(file -> file.getPath().contains("system_schema") && file.getName().endsWith("-Data.db")));
+        assertFalse(imageFiles.stream().anyMatch(file -> file.getPath().contains(File.separator + "snapshots" + File.separator)));
+        assertFalse(FileUtils.listFilesAndDirs(dataFolder, TrueFileFilter.INSTANCE, TrueFileFilter.INSTANCE).stream()
+                .anyMatch(file -> file.getName().startsWith("apollon-golden-image-")));
+    }
+}
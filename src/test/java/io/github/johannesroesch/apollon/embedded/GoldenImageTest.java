@@ -0,0 +1,99 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.johannesroesch.apollon.embedded.CassandraEmbeddedConfigParameters.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GoldenImageTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testKeyIgnoresPorts() {
+        final TypedMap parameters = CassandraEmbeddedConfigParameters.getDefaultParameters();
+        final TypedMap otherPorts = CassandraEmbeddedConfigParameters.getDefaultParameters();
+        otherPorts.put(CASSANDRA_CQL_PORT, 9043);
+        otherPorts.put(CASSANDRA_STORAGE_PORT, 7002);
+
+        assertEquals(GoldenImage.computeKey(parameters), GoldenImage.computeKey(otherPorts));
+    }
+
+    @Test
+    public void testKeyChangesWithConfig() {
+        final TypedMap parameters = CassandraEmbeddedConfigParameters.getDefaultParameters();
+        final TypedMap otherConfig = CassandraEmbeddedConfigParameters.getDefaultParameters();
+        otherConfig.put(CLUSTER_NAME, "Other Cluster");
+
+        assertNotEquals(GoldenImage.computeKey(parameters), GoldenImage.computeKey(otherConfig));
+    }
+
+    @Test
+    public void testCopySnapshotToTheTableFolders() throws IOException {
+        final File dataFolder = temporaryFolder.newFolder("data");
+        final File snapshot = new File(dataFolder, "ks/users-1234/snapshots/golden");
+        assertTrue(new File(snapshot, ".users_name_idx").mkdirs());
+        assertTrue(new File(snapshot, "nb-1-big-Data.db").createNewFile());
+        assertTrue(new File(snapshot, ".users_name_idx/nb-1-big-Data.db").createNewFile());
+        assertTrue(new File(snapshot, "manifest.json").createNewFile());
+        assertTrue(new File(dataFolder, "ks/users-1234/nb-2-big-Data.db").createNewFile());
+        assertTrue(new File(dataFolder, "ks/users-1234/snapshots/other/nb-3-big-Data.db").getParentFile().mkdirs());
+
+        final File image = new File(temporaryFolder.getRoot(), "image");
+        GoldenImage.copySnapshot(dataFolder, "golden", image);
+
+        assertTrue(new File(image, "ks/users-1234/nb-1-big-Data.db").isFile());
+        assertTrue(new File(image, "ks/users-1234/.users_name_idx/nb-1-big-Data.db").isFile());
+        assertFalse(new File(image, "ks/users-1234/manifest.json").exists());
+        assertFalse(new File(image, "ks/users-1234/nb-2-big-Data.db").exists());
+        assertFalse(new File(image, "ks/users-1234/snapshots").exists());
+    }
+
+    @Test
+    public void testDeleteOnlyImagesUnusedForLong() throws IOException {
+        final File rootFolder = temporaryFolder.newFolder("images");
+        final File current = newImage(rootFolder, "current", 30);
+        final File recent = newImage(rootFolder, "recent", 1);
+        final File stale = newImage(rootFolder, "stale", 30);
+
+        GoldenImage.deleteStaleImages(rootFolder, "current", TimeUnit.DAYS.toMillis(7));
+
+        assertTrue(current.exists());
+        assertTrue(recent.exists());
+        assertFalse(stale.exists());
+    }
+
+    private static File newImage(File rootFolder, String key, int lastUseDaysAgo) throws IOException {
+        final File image = new File(rootFolder, key);
+        final File descriptor = new File(image, "golden-image.properties");
+        assertTrue(image.mkdir() && descriptor.createNewFile());
+        assertTrue(descriptor.setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(lastUseDaysAgo)));
+        return image;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class InJvmClusterTest {
+
+    @Test
+    public void should_start_again_after_stop_without_leaking_the_nodes() {
+        final List<ClassLoader> stoppedNodes = new ArrayList<>();
+        for (int run = 0; run < 2; run++) {
+            try (InJvmCluster cluster = CassandraEmbeddedServerBuilder.builder().buildInJvmCluster(2)) {
+                assertEquals(1, cluster.getNativeSession().execute("SELECT peer FROM system.peers").all().size());
+                stoppedNodes.addAll(cluster.getNodeClassLoaders());
+            }
+
+            for (ClassLoader node : stoppedNodes) {
+                assertEquals(Collections.emptyList(), InJvmCluster.nodeThreads(node));
+                assertEquals(Collections.emptyList(), InJvmCluster.nodeMBeans(node));
+            }
+        }
+        assertEquals(4, stoppedNodes.size());
+    }
+}
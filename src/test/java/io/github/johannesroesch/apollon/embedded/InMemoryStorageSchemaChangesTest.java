@@ -0,0 +1,65 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import org.apache.cassandra.schema.Schema;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+
+public class InMemoryStorageSchemaChangesTest {
+
+    private static CassandraEmbeddedServer server;
+
+    @BeforeClass
+    public static void startServer() {
+        server = CassandraEmbeddedServerBuilder.builder()
+                .cleanDataFilesAtStartup(true)
+                .withInMemoryStorage(64)
+                .buildServer();
+    }
+
+    @Test
+    public void should_keep_durable_writes_disabled_after_altering_a_type() {
+        final CqlSession session = server.getNativeSession();
+        session.execute("CREATE KEYSPACE IF NOT EXISTS in_memory_types WITH replication = {'class': 'SimpleStrategy', 'replication_factor': 1} AND durable_writes = true");
+        session.execute("CREATE TYPE IF NOT EXISTS in_memory_types.address(street text)");
+        assertFalse(isDurable("in_memory_types"));
+
+        session.execute("ALTER TYPE in_memory_types.address ADD city text");
+
+        assertFalse(isDurable("in_memory_types"));
+    }
+
+    @Test
+    public void should_keep_durable_writes_disabled_after_dropping_a_type() {
+        final CqlSession session = server.getNativeSession();
+        session.execute("CREATE KEYSPACE IF NOT EXISTS in_memory_dropped_types WITH replication = {'class': 'SimpleStrategy', 'replication_factor': 1} AND durable_writes = true");
+        session.execute("CREATE TYPE IF NOT EXISTS in_memory_dropped_types.address(street text)");
+        assertFalse(isDurable("in_memory_dropped_types"));
+
+        session.execute("DROP TYPE in_memory_dropped_types.address");
+
+        assertFalse(isDurable("in_memory_dropped_types"));
+    }
+
+    private static boolean isDurable(String keyspace) {
+        return Schema.instance.getKeyspaceInstance(keyspace).getMetadata().params.durableWrites;
+    }
+}
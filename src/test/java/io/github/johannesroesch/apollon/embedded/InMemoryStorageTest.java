@@ -0,0 +1,43 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import org.apache.cassandra.config.Config;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static io.github.johannesroesch.apollon.embedded.ApollonCassandraConfig.ACHILLES_EMBEDDED_CASSANDRA_CONFIG_OVERRIDE_PREFIX;
+import static org.junit.Assert.assertEquals;
+
+public class InMemoryStorageTest {
+
+    @Test
+    public void should_raise_memtable_space_to_the_ceiling() {
+        final Config config = new Config();
+        ConfigProfile.LOW_MEMORY.apply(config);
+
+        final Properties overrides = new Properties();
+        InMemoryStorage.configOverrides(512).forEach((setting, value) ->
+                overrides.setProperty(ACHILLES_EMBEDDED_CASSANDRA_CONFIG_OVERRIDE_PREFIX + setting, String.valueOf(value)));
+        ApollonCassandraConfig.applyOverrides(config, overrides);
+
+        assertEquals(Integer.valueOf(512), config.memtable_heap_space_in_mb);
+        assertEquals(Integer.valueOf(512), config.memtable_offheap_space_in_mb);
+        assertEquals(Float.valueOf(InMemoryStorage.MEMTABLE_CLEANUP_THRESHOLD), config.memtable_cleanup_threshold);
+    }
+}
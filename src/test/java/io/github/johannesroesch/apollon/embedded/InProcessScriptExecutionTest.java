@@ -0,0 +1,108 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.metadata.schema.KeyspaceMetadata;
+import io.github.johannesroesch.apollon.exception.ApollonException;
+import io.github.johannesroesch.apollon.junit.CassandraRule;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InProcessScriptExecutionTest {
+
+    @ClassRule
+    public static final CassandraRule cassandraRule = CassandraRule.builder().build();
+
+    @Test
+    public void should_make_the_seed_rows_visible_through_the_driver() {
+        final CqlSession session = cassandraRule.getNativeSession();
+
+        new ScriptExecutor(session).executeInProcess(true).executeScript("script/in_process_seed.cql");
+
+        final Row john = session.execute("SELECT name FROM in_process.users WHERE id = 1").one();
+        final Row helen = session.execute("SELECT name FROM in_process.users WHERE id = 2").one();
+        assertEquals("john", john.getString("name"));
+        assertEquals("helen", helen.getString("name"));
+    }
+
+    @Test
+    public void should_report_the_line_of_the_failing_statement() {
+        try {
+            new ScriptExecutor(cassandraRule.getNativeSession()).executeInProcess(true).executeScript("script/in_process_error.cql");
+            fail("The script should fail");
+        } catch (ApollonException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Error executing script 'script/in_process_error.cql', line 3:"));
+        }
+    }
+
+    @Test
+    public void should_switch_the_session_to_the_keyspace_used_by_the_script() {
+        final CqlSession session = cassandraRule.getNativeSession();
+        final Optional<CqlIdentifier> sessionKeyspace = session.getKeyspace();
+        try {
+            new ScriptExecutor(session).executeInProcess(true).executeScript("script/in_process_use.cql");
+
+            assertEquals(Optional.of(CqlIdentifier.fromInternal("in_process_use")), session.getKeyspace());
+            assertEquals("john", session.execute("SELECT name FROM users WHERE id = 1").one().getString("name"));
+        } finally {
+            sessionKeyspace.ifPresent(keyspace -> session.execute("USE " + keyspace.asCql(true)));
+        }
+    }
+
+    @Test
+    public void should_apply_interleaved_schema_and_data_statements_in_bulk() {
+        final CqlSession session = cassandraRule.getNativeSession();
+
+        new ScriptExecutor(session).bulkApplySchema(true).executeScript("script/bulk_schema.cql");
+
+        assertEquals("john", session.execute("SELECT name FROM bulk_schema.users WHERE id = 1").one().getString("name"));
+        assertEquals(1, session.execute("SELECT * FROM bulk_schema.addresses WHERE user_id = 1").all().size());
+        final KeyspaceMetadata keyspace = session.getMetadata().getKeyspace("bulk_schema").orElseThrow(AssertionError::new);
+        assertTrue(keyspace.getTable("users").isPresent());
+        assertTrue(keyspace.getTable("addresses").isPresent());
+        assertTrue(keyspace.getUserDefinedType("address").isPresent());
+    }
+
+    @Test
+    public void should_report_the_line_of_the_failing_schema_statement() {
+        try {
+            new ScriptExecutor(cassandraRule.getNativeSession()).bulkApplySchema(true).executeScript("script/bulk_schema_error.cql");
+            fail("The script should fail");
+        } catch (ApollonException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Error executing script 'script/bulk_schema_error.cql', line 4:"));
+        }
+    }
+
+    @Test
+    public void should_reject_the_changes_of_system_keyspaces_in_bulk() {
+        try {
+            new ScriptExecutor(cassandraRule.getNativeSession()).bulkApplySchema(true).executeScript("script/bulk_schema_system.cql");
+            fail("The script should fail");
+        } catch (ApollonException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith("line 1: System keyspace 'system' is not user-modifiable"));
+        }
+    }
+}
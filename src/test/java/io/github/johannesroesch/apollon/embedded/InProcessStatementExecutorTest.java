@@ -0,0 +1,42 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import io.github.johannesroesch.apollon.exception.ApollonException;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assume.assumeFalse;
+
+public class InProcessStatementExecutorTest {
+
+    @Before
+    public void setUp() {
+        // The embedded server may have been started by another test of this JVM
+        assumeFalse(InProcessStatementExecutor.isAvailable());
+    }
+
+    @Test(expected = ApollonException.class)
+    public void should_require_an_embedded_server_in_this_jvm() {
+        new ScriptExecutor(null).executeInProcess(true);
+    }
+
+    @Test(expected = ApollonException.class)
+    public void should_require_an_embedded_server_to_bulk_apply_schema() {
+        new ScriptExecutor(null).bulkApplySchema(true);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import com.datastax.oss.driver.api.core.cql.Row;
+import io.github.johannesroesch.apollon.junit.CassandraRule;
+import org.apache.cassandra.db.Directories;
+import org.apache.cassandra.db.Keyspace;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static io.github.johannesroesch.apollon.embedded.CassandraEmbeddedConfigParameters.DEFAULT_KEYSPACE_NAME;
+import static io.github.johannesroesch.apollon.embedded.CassandraEmbeddedConfigParameters.SCRIPT_LOCATIONS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KeyspaceSnapshotRestoreTest {
+
+    private static final String KEYSPACE = "snapshot_restore";
+
+    @Rule
+    public final CassandraRule cassandraRule = CassandraRule.builder()
+            .withParameters(parameters())
+            .restoreSnapshotAfterEachTest("seed")
+            .build();
+
+    @Test
+    public void should_restore_the_exact_seed_rows_and_keep_the_snapshot_for_another_restore() {
+        final CassandraEmbeddedServer server = CassandraEmbeddedServerBuilder.builder().buildServer();
+        server.snapshotKeyspace(KEYSPACE, "manual");
+        final int snapshotFiles = snapshotFiles("manual");
+        assertTrue(snapshotFiles > 0);
+
+        for (int restore = 0; restore < 2; restore++) {
+            execute("UPDATE " + KEYSPACE + ".users SET name = 'paul' WHERE id = 1");
+            execute("INSERT INTO " + KEYSPACE + ".users(id, name) VALUES(3, 'anna')");
+
+            server.restoreKeyspaceSnapshot(KEYSPACE, "manual");
+
+            assertEquals(seedUsers(), selectUsers());
+            assertEquals(snapshotFiles, snapshotFiles("manual"));
+        }
+    }
+
+    @Test
+    public void should_see_only_the_seed_rows_restored_after_the_other_tests() {
+        assertEquals(seedUsers(), selectUsers());
+
+        execute("UPDATE " + KEYSPACE + ".users SET name = 'paul' WHERE id = 1");
+        execute("DELETE FROM " + KEYSPACE + ".users WHERE id = 2");
+        execute("INSERT INTO " + KEYSPACE + ".users(id, name) VALUES(4, 'lucy')");
+    }
+
+    @Test
+    public void should_see_only_the_seed_rows_restored_after_the_other_tests_again() {
+        should_see_only_the_seed_rows_restored_after_the_other_tests();
+    }
+
+    private void execute(String query) {
+        cassandraRule.getNativeSession().execute(query);
+    }
+
+    private Map<Integer, String> selectUsers() {
+        final Map<Integer, String> users = new TreeMap<>();
+        for (Row row : cassandraRule.getNativeSession().execute("SELECT id, name FROM " + KEYSPACE + ".users")) {
+            users.put(row.getInt("id"), row.getString("name"));
+        }
+        return users;
+    }
+
+    private static Map<Integer, String> seedUsers() {
+        final Map<Integer, String> users = new TreeMap<>();
+        users.put(1, "john");
+        users.put(2, "helen");
+        return users;
+    }
+
+    private static int snapshotFiles(String snapshotName) {
+        int files = 0;
+        for (File tableFolder : Keyspace.open(KEYSPACE).getColumnFamilyStore("users").getDirectories().getCFDirectories()) {
+            final String[] snapshotFiles = Directories.getSnapshotDirectory(tableFolder, snapshotName).list();
+            files += snapshotFiles == null ? 0 : snapshotFiles.length;
+        }
+        return files;
+    }
+
+    private static TypedMap parameters() {
+        final TypedMap parameters = new TypedMap();
+        parameters.put(DEFAULT_KEYSPACE_NAME, KEYSPACE);
+        parameters.put(SCRIPT_LOCATIONS, Collections.singletonList("script/snapshot_seed.cql"));
+        return parameters;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import io.github.johannesroesch.apollon.exception.ApollonException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static io.github.johannesroesch.apollon.embedded.CassandraEmbeddedConfigParameters.*;
+import static org.junit.Assert.assertEquals;
+
+public class LocalClusterNodeTest {
+
+    @Test
+    public void should_parse_typed_node_arguments() {
+        final TypedMap parameters = LocalClusterNode.parseArguments(Arrays.asList(
+                LISTEN_ADDRESS + "=127.0.0.2",
+                SEEDS + "=127.0.0.1,127.0.0.2",
+                CASSANDRA_CQL_PORT + "=9042",
+                STARTUP_TIMEOUT_IN_MILLIS + "=60000",
+                CLEAN_CASSANDRA_DATA_FILES + "=true"));
+
+        assertEquals("127.0.0.2", parameters.getTyped(LISTEN_ADDRESS));
+        assertEquals("127.0.0.1,127.0.0.2", parameters.getTyped(SEEDS));
+        assertEquals(Integer.valueOf(9042), parameters.getTyped(CASSANDRA_CQL_PORT));
+        assertEquals(Long.valueOf(60000), parameters.getTyped(STARTUP_TIMEOUT_IN_MILLIS));
+        assertEquals(Boolean.TRUE, parameters.getTyped(CLEAN_CASSANDRA_DATA_FILES));
+    }
+
+    @Test(expected = ApollonException.class)
+    public void should_reject_argument_without_value() {
+        LocalClusterNode.parseArguments(Collections.singletonList(LISTEN_ADDRESS));
+    }
+}
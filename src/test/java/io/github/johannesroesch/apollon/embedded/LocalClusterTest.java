@@ -0,0 +1,40 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.metadata.NodeState;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LocalClusterTest {
+
+    @Test
+    public void should_start_a_cluster_of_two_forked_nodes_ready_for_the_schema() {
+        try (LocalCluster cluster = CassandraEmbeddedServerBuilder.builder().buildLocalCluster(2)) {
+            final CqlSession session = cluster.getNativeSession();
+
+            assertEquals(2, session.getMetadata().getNodes().values().stream().filter(node -> node.getState() == NodeState.UP).count());
+            assertTrue(session.checkSchemaAgreement());
+            assertEquals(1, session.execute("SELECT peer FROM system.peers").all().size());
+            assertEquals("2", session.getMetadata().getKeyspace(CassandraEmbeddedConfigParameters.DEFAULT_CASSANDRA_EMBEDDED_KEYSPACE_NAME)
+                    .get().getReplication().get("replication_factor"));
+        }
+    }
+}
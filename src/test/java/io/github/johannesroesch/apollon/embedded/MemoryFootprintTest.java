@@ -0,0 +1,45 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MemoryFootprintTest {
+
+    @Test
+    public void should_measure_footprint_when_startup_completes() {
+        final StartupReport report = new StartupReport();
+        report.complete();
+
+        final MemoryFootprint footprint = report.getMemoryFootprint();
+        assertTrue(footprint.getHeapUsedBytes() > 0);
+        assertTrue(footprint.getThreadCount() > 0);
+        assertTrue(footprint.toLogLine().startsWith("heapUsed="));
+    }
+
+    @Test
+    public void should_parse_resident_set_size() {
+        assertEquals(2048L * 1024L, MemoryFootprint.parseResidentSetSize(Arrays.asList("Name:\tjava", "VmRSS:\t    2048 kB")));
+        assertEquals(-1L, MemoryFootprint.parseResidentSetSize(Collections.singletonList("Name:\tjava")));
+    }
+}
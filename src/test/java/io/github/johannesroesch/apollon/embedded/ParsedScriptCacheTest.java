@@ -0,0 +1,87 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import io.github.johannesroesch.apollon.embedded.ParsedScriptCache.ParsedStatement;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ParsedScriptCacheTest {
+
+    private final AtomicInteger parsings = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        ParsedScriptCache.clear();
+    }
+
+    @Test
+    public void testParseOncePerContent() {
+        final List<ParsedStatement> first = getOrParse("CREATE TABLE users(id int PRIMARY KEY);");
+        final List<ParsedStatement> second = getOrParse("CREATE TABLE users(id int PRIMARY KEY);");
+        getOrParse("CREATE TABLE users(id bigint PRIMARY KEY);");
+
+        assertSame(first, second);
+        assertEquals(2, parsings.get());
+    }
+
+    @Test
+    public void testParseAgainAfterClear() {
+        getOrParse("CREATE TABLE users(id int PRIMARY KEY);");
+        ParsedScriptCache.clear();
+        getOrParse("CREATE TABLE users(id int PRIMARY KEY);");
+
+        assertEquals(2, parsings.get());
+    }
+
+    @Test
+    public void testLengthOfStatements() {
+        final List<ParsedStatement> statements = Arrays.asList(
+                new ParsedStatement(SimpleStatement.newInstance("USE ks"), 1),
+                new ParsedStatement(SimpleStatement.newInstance("TRUNCATE users"), 2));
+
+        assertEquals(20, ParsedScriptCache.length(statements));
+    }
+
+    @Test
+    public void testAppliedScriptsPerKeyspace() {
+        ParsedScriptCache.markApplied("ks", "script.cql", Collections.emptyMap());
+
+        assertTrue(ParsedScriptCache.isApplied("ks", "script.cql", Collections.emptyMap()));
+        assertFalse(ParsedScriptCache.isApplied("other_ks", "script.cql", Collections.emptyMap()));
+        assertFalse(ParsedScriptCache.isApplied("ks", "script.cql", Collections.singletonMap("id", 1)));
+    }
+
+    private List<ParsedStatement> getOrParse(String content) {
+        return ParsedScriptCache.getOrParse("script.cql", content.getBytes(StandardCharsets.UTF_8), Collections.emptyMap(), () -> {
+            parsings.incrementAndGet();
+            return Collections.singletonList(new ParsedStatement(SimpleStatement.newInstance(content), 1));
+        });
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import io.github.johannesroesch.apollon.exception.ApollonException;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PipelinedStatementExecutorTest {
+
+    private final List<String> executedQueries = Collections.synchronizedList(new ArrayList<>());
+    private final List<CompletableFuture<AsyncResultSet>> pendingResults = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void should_bound_the_number_of_in_flight_statements() throws Exception {
+        final PipelinedStatementExecutor executor = new PipelinedStatementExecutor(asyncSession(), "script.cql", 2);
+        executor.execute(statement("INSERT INTO users(id) VALUES(1)"), 1);
+        executor.execute(statement("INSERT INTO users(id) VALUES(2)"), 2);
+
+        final CompletableFuture<Void> third = CompletableFuture.runAsync(() -> executor.execute(statement("INSERT INTO users(id) VALUES(3)"), 3));
+        Thread.sleep(200);
+        assertEquals(2, executedQueries.size());
+
+        pendingResults.get(0).complete(null);
+        third.get(5, TimeUnit.SECONDS);
+        assertEquals(3, executedQueries.size());
+    }
+
+    @Test
+    public void should_execute_schema_statements_after_the_pending_data_statements() throws Exception {
+        final PipelinedStatementExecutor executor = new PipelinedStatementExecutor(asyncSession(), "script.cql", 8);
+        executor.execute(statement("INSERT INTO users(id) VALUES(1)"), 1);
+        executor.execute(statement("UPDATE users SET name = 'john' WHERE id = 1"), 2);
+
+        final CompletableFuture<Void> barrier = CompletableFuture.runAsync(() -> executor.execute(statement("ALTER TABLE users ADD age int"), 3));
+        Thread.sleep(200);
+        assertEquals(2, executedQueries.size());
+
+        pendingResults.get(0).complete(null);
+        Thread.sleep(200);
+        assertEquals(2, executedQueries.size());
+
+        pendingResults.get(1).complete(null);
+        barrier.get(5, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("INSERT INTO users(id) VALUES(1)", "UPDATE users SET name = 'john' WHERE id = 1",
+                "ALTER TABLE users ADD age int"), executedQueries);
+    }
+
+    @Test
+    public void should_report_the_lines_of_the_failed_statements_on_completion() {
+        final PipelinedStatementExecutor executor = new PipelinedStatementExecutor(asyncSession(), "script.cql", 8);
+        executor.execute(statement("INSERT INTO users(id) VALUES(1)"), 1);
+        executor.execute(statement("INSERT INTO users(id) VALUES(2)"), 3);
+        executor.execute(statement("INSERT INTO users(id) VALUES(3)"), 5);
+        pendingResults.get(0).completeExceptionally(new IllegalStateException("first failure"));
+        pendingResults.get(1).complete(null);
+        pendingResults.get(2).completeExceptionally(new IllegalStateException("second failure"));
+
+        try {
+            executor.awaitCompletion();
+            fail("The failed statements should be reported");
+        } catch (ApollonException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("2 statement(s) of script 'script.cql' failed:"));
+            assertTrue(e.getMessage(), e.getMessage().contains("line 1: first failure"));
+            assertTrue(e.getMessage(), e.getMessage().contains("line 5: second failure"));
+        }
+        // The errors are reported once
+        executor.awaitCompletion();
+    }
+
+    private static SimpleStatement statement(String query) {
+        return SimpleStatement.newInstance(query);
+    }
+
+    private CqlSession asyncSession() {
+        return (CqlSession) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{CqlSession.class}, (proxy, method, args) -> {
+            if (args != null && args[0] instanceof SimpleStatement) {
+                if ("executeAsync".equals(method.getName())) {
+                    final CompletableFuture<AsyncResultSet> result = new CompletableFuture<>();
+                    pendingResults.add(result);
+                    executedQueries.add(((SimpleStatement) args[0]).getQuery());
+                    return result;
+                } else if ("execute".equals(method.getName())) {
+                    executedQueries.add(((SimpleStatement) args[0]).getQuery());
+                    return null;
+                }
+            }
+            throw new UnsupportedOperationException(method.getName());
+        });
+    }
+}
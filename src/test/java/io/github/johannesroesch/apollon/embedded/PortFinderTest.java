@@ -0,0 +1,63 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PortFinderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        System.setProperty(PortFinder.PORT_LOCKS_FOLDER_PROPERTY, temporaryFolder.getRoot().getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(PortFinder.PORT_LOCKS_FOLDER_PROPERTY);
+    }
+
+    @Test
+    public void should_reserve_disjoint_blocks_of_contiguous_ports() {
+        try (PortBlock first = PortFinder.reserveBlock(5); PortBlock second = PortFinder.reserveBlock(3)) {
+            assertEquals(5, first.size());
+            assertEquals(first.get(0) + 4, first.get(4));
+            assertEquals(second.get(0) + 2, second.get(2));
+            assertTrue(second.get(0) > first.get(4) || second.get(2) < first.get(0));
+        }
+    }
+
+    @Test
+    public void should_reserve_released_ports_again() {
+        final int firstPort;
+        try (PortBlock block = PortFinder.reserveBlock(2)) {
+            firstPort = block.get(0);
+        }
+        try (PortBlock block = PortFinder.reserveBlock(2)) {
+            assertEquals(firstPort, block.get(0));
+        }
+    }
+}
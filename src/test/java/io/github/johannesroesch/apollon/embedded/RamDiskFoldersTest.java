@@ -0,0 +1,85 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static io.github.johannesroesch.apollon.embedded.CassandraEmbeddedConfigParameters.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+public class RamDiskFoldersTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void should_place_default_folders_on_ram_disk_and_delete_them() throws Exception {
+        final Path ramDisk = temporaryFolder.getRoot().toPath();
+        final String explicitFolder = temporaryFolder.newFolder("hints").getAbsolutePath();
+        final TypedMap parameters = new TypedMap();
+        parameters.put(WORKER_ID, "3");
+        parameters.put(HINTS_FOLDER, explicitFolder);
+        final TypedMap merged = mergeWithDefaultParameters(parameters);
+
+        final Optional<RamDiskFolders> ramDiskFolders = RamDiskFolders.placeIfAvailable(merged, ramDisk, 0L, true);
+
+        assertTrue(ramDiskFolders.isPresent());
+        final String dataFolder = merged.getTyped(DATA_FILE_FOLDER);
+        assertEquals(RamDiskFolders.ramFolder(ramDisk, "target/cassandra_embedded/worker-3/data"), dataFolder);
+        assertTrue(new File(dataFolder).isDirectory());
+        assertEquals(explicitFolder, merged.getTyped(HINTS_FOLDER));
+
+        ramDiskFolders.get().delete();
+        assertFalse(new File(dataFolder).exists());
+        assertTrue(new File(explicitFolder).isDirectory());
+    }
+
+    @Test
+    public void should_keep_folders_on_disk_when_ram_disk_is_not_available() {
+        final TypedMap parameters = getDefaultParameters();
+        final String dataFolder = parameters.getTyped(DATA_FILE_FOLDER);
+
+        final Path missingRamDisk = new File(temporaryFolder.getRoot(), "missing").toPath();
+        assertFalse(RamDiskFolders.placeIfAvailable(parameters, missingRamDisk, 0L, true).isPresent());
+        assertFalse(RamDiskFolders.placeIfAvailable(parameters, temporaryFolder.getRoot().toPath(), Long.MAX_VALUE, true).isPresent());
+        assertEquals(dataFolder, parameters.getTyped(DATA_FILE_FOLDER));
+    }
+
+    @Test
+    public void should_keep_folders_on_disk_when_ram_disk_is_not_backed_by_memory() throws Exception {
+        final Path folder = temporaryFolder.getRoot().toPath();
+        final String fileSystemType = Files.getFileStore(folder).type();
+        assumeFalse(RamDiskFolders.RAM_FILE_SYSTEM_TYPES.contains(fileSystemType));
+        final TypedMap parameters = getDefaultParameters();
+        final String dataFolder = parameters.getTyped(DATA_FILE_FOLDER);
+
+        assertEquals(Optional.of(String.format("is a '%s' file system, not backed by memory", fileSystemType)),
+                RamDiskFolders.checkAvailability(folder, 0L, false));
+        assertFalse(RamDiskFolders.placeIfAvailable(parameters, folder, 0L, false).isPresent());
+        assertEquals(dataFolder, parameters.getTyped(DATA_FILE_FOLDER));
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.context.DriverContext;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinition;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.type.DataTypes;
+import com.datastax.oss.driver.api.core.type.codec.registry.CodecRegistry;
+import io.github.johannesroesch.apollon.embedded.RepeatedInsertPreparer.ParsedInsert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RepeatedInsertPreparerTest {
+
+    private final List<String> preparedQueries = new ArrayList<>();
+
+    @Test
+    public void testParseInsertWithLiterals() {
+        final ParsedInsert insert = ParsedInsert.parse("INSERT INTO ks.users(id, name, tags) VALUES(1, 'o''neil, john', {'a', 'b'}) USING TTL 10;");
+
+        assertEquals("INSERT INTO ks.users(id, name, tags) VALUES(?, ?, ?) USING TTL 10;", insert.getPreparedQuery());
+        assertEquals(Arrays.asList("1", "'o''neil, john'", "{'a', 'b'}"), insert.getLiterals());
+    }
+
+    @Test
+    public void testSameShapeForDifferentLiterals() {
+        assertEquals(ParsedInsert.parse("INSERT INTO users(id, name) VALUES(1, 'john');").getPreparedQuery(),
+                ParsedInsert.parse("insert into users (id, name) values (2, 'helen')").getPreparedQuery());
+    }
+
+    @Test
+    public void testDoNotParseUnbindableStatements() {
+        assertNull(ParsedInsert.parse("INSERT INTO users(id, created) VALUES(1, now());"));
+        assertNull(ParsedInsert.parse("INSERT INTO users(id, name) VALUES(?, ?);"));
+        assertNull(ParsedInsert.parse("INSERT INTO users(id, name) VALUES(1);"));
+        assertNull(ParsedInsert.parse("INSERT INTO users JSON '{\"id\": 1}';"));
+        assertNull(ParsedInsert.parse("UPDATE users SET name = 'john' WHERE id = 1;"));
+    }
+
+    @Test
+    public void testPrepareSameShapeOnceForEachKeyspace() {
+        final RepeatedInsertPreparer preparer = new RepeatedInsertPreparer(preparingSession());
+        for (String query : Arrays.asList("USE ks1;", "INSERT INTO users(id) VALUES(1);", "INSERT INTO users(id) VALUES(2);",
+                "USE ks2;", "INSERT INTO users(id) VALUES(3);", "INSERT INTO users(id) VALUES(4);",
+                "USE ks1;", "INSERT INTO users(id) VALUES(5);")) {
+            preparer.prepareIfRepeated(SimpleStatement.newInstance(query));
+        }
+
+        assertEquals(Arrays.asList("INSERT INTO ks1.users(id) VALUES(?);", "INSERT INTO ks2.users(id) VALUES(?);"), preparedQueries);
+        assertEquals(3, preparer.getBoundStatements());
+    }
+
+    @Test
+    public void testKeepQualifiedTable() {
+        assertEquals("INSERT INTO ks.users(id) VALUES(?);", ParsedInsert.parse("INSERT INTO ks.users(id) VALUES(1);").getPreparedQuery("other"));
+        assertEquals("INSERT INTO users(id) VALUES(?);", ParsedInsert.parse("INSERT INTO users(id) VALUES(1);").getPreparedQuery(null));
+    }
+
+    private CqlSession preparingSession() {
+        final ColumnDefinition column = proxy(ColumnDefinition.class, (proxy, method, args) -> DataTypes.INT);
+        final ColumnDefinitions variables = proxy(ColumnDefinitions.class, (proxy, method, args) -> column);
+        final PreparedStatement prepared = proxy(PreparedStatement.class, (proxy, method, args) ->
+                "getVariableDefinitions".equals(method.getName()) ? variables : null);
+        final DriverContext context = proxy(DriverContext.class, (proxy, method, args) -> CodecRegistry.DEFAULT);
+        return proxy(CqlSession.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getContext":
+                    return context;
+                case "getKeyspace":
+                    return Optional.empty();
+                case "prepare":
+                    preparedQueries.add((String) args[0]);
+                    return prepared;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
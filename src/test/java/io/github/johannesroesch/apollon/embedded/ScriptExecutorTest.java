@@ -0,0 +1,69 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class ScriptExecutorTest {
+
+    private static final Map<String, Object> KEYSPACE = Collections.singletonMap(KeyspacePool.KEYSPACE_VARIABLE, "ks_0");
+
+    private final List<String> executedQueries = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        ScriptExecutor.clearScriptTemplates();
+    }
+
+    @Test
+    public void should_execute_all_the_statements_of_a_script() {
+        new ScriptExecutor(recordingSession()).executeScriptTemplate("script/seed_template.cql", KEYSPACE);
+
+        assertEquals(4, executedQueries.size());
+        assertEquals("CREATE TABLE IF NOT EXISTS ks_0.users(id int PRIMARY KEY, name text);", executedQueries.get(0));
+    }
+
+    @Test
+    public void should_execute_only_the_data_statements_to_seed_again() {
+        new ScriptExecutor(recordingSession()).executeDataStatements("script/seed_template.cql", KEYSPACE);
+
+        assertEquals(2, executedQueries.size());
+        assertEquals("INSERT INTO ks_0.users(id, name) VALUES(1, 'john');", executedQueries.get(0));
+        assertEquals("UPDATE ks_0.users SET name = 'helen' WHERE id = 2;", executedQueries.get(1));
+    }
+
+    private CqlSession recordingSession() {
+        return (CqlSession) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{CqlSession.class}, (proxy, method, args) -> {
+            if ("execute".equals(method.getName()) && args[0] instanceof SimpleStatement) {
+                executedQueries.add(((SimpleStatement) args[0]).getQuery());
+                return null;
+            }
+            throw new UnsupportedOperationException(method.getName());
+        });
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import io.github.johannesroesch.apollon.exception.ApollonException;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class ScriptTemplateTest {
+
+    @Test
+    public void testRenderVariables() throws IOException {
+        final ScriptTemplate template = compile("CREATE TABLE ${keyspace}.users(id int PRIMARY KEY);",
+                "",
+                "  INSERT INTO ${keyspace}.users(id) VALUES(${id});  ");
+        final Map<String, Object> values = new HashMap<>();
+        values.put("keyspace", "ks");
+        values.put("id", 10);
+
+        final List<String> lines = new ArrayList<>();
+        final List<Integer> lineNumbers = new ArrayList<>();
+        template.render(values, (line, lineNumber) -> {
+            lines.add(line);
+            lineNumbers.add(lineNumber);
+        });
+
+        assertEquals(Arrays.asList("CREATE TABLE ks.users(id int PRIMARY KEY);", "INSERT INTO ks.users(id) VALUES(10);"), lines);
+        assertEquals(Arrays.asList(1, 3), lineNumbers);
+    }
+
+    @Test
+    public void testRenderValueWithRegexCharacters() throws IOException {
+        final List<String> lines = new ArrayList<>();
+        compile("INSERT INTO users(name) VALUES('${name}');")
+                .render(Collections.singletonMap("name", "$1 (a|b)*\\"), (line, lineNumber) -> lines.add(line));
+
+        assertEquals(Arrays.asList("INSERT INTO users(name) VALUES('$1 (a|b)*\\');"), lines);
+    }
+
+    @Test(expected = ApollonException.class)
+    public void testMissingVariable() throws IOException {
+        compile("INSERT INTO users(id) VALUES(${id});")
+                .render(Collections.singletonMap("name", "john"), (line, lineNumber) -> {
+                });
+    }
+
+    @Test
+    public void testLengthOfNonBlankLines() throws IOException {
+        final ScriptTemplate template = compile("USE ${keyspace};", "", "  TRUNCATE users;  ");
+
+        assertEquals("USE ${keyspace};".length() + "TRUNCATE users;".length(), template.length());
+    }
+
+    private ScriptTemplate compile(String... lines) throws IOException {
+        return ScriptTemplate.compile(new BufferedReader(new StringReader(String.join("\n", lines))));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import org.apache.cassandra.service.CassandraDaemon;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static io.github.johannesroesch.apollon.embedded.CassandraEmbeddedConfigParameters.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ServerStarterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void should_fail_the_startup_future_instead_of_exiting_the_jvm() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final AtomicBoolean activated = new AtomicBoolean();
+        try {
+            final CompletableFuture<CassandraDaemon> startupFuture = ServerStarter.activateDaemon(executor,
+                    FailingDaemon::new, daemon -> activated.set(true));
+
+            startupFuture.get(10, TimeUnit.SECONDS);
+            fail("The startup should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RuntimeException);
+            assertEquals(FailingDaemon.FAILURE, e.getCause().getCause());
+            assertFalse(activated.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void should_bootstrap_fast_only_with_the_unsafe_daemon_on_empty_folders() throws Exception {
+        final TypedMap parameters = new TypedMap();
+        parameters.put(USE_UNSAFE_CASSANDRA_DAEMON, true);
+        parameters.put(FAST_BOOTSTRAP_ON_FRESH_DATA, true);
+        parameters.put(DATA_FILE_FOLDER, temporaryFolder.newFolder("data").getPath());
+        parameters.put(COMMIT_LOG_FOLDER, temporaryFolder.newFolder("commitlog").getPath());
+        parameters.put(SAVED_CACHES_FOLDER, new File(temporaryFolder.getRoot(), "saved_caches").getPath());
+        assertTrue(ServerStarter.isFastBootstrap(parameters));
+
+        parameters.put(USE_UNSAFE_CASSANDRA_DAEMON, false);
+        assertFalse(ServerStarter.isFastBootstrap(parameters));
+
+        parameters.put(USE_UNSAFE_CASSANDRA_DAEMON, true);
+        parameters.put(FAST_BOOTSTRAP_ON_FRESH_DATA, false);
+        assertFalse(ServerStarter.isFastBootstrap(parameters));
+
+        parameters.put(FAST_BOOTSTRAP_ON_FRESH_DATA, true);
+        assertTrue(new File(temporaryFolder.getRoot(), "commitlog/CommitLog-7-1.log").createNewFile());
+        assertFalse(ServerStarter.isFastBootstrap(parameters));
+    }
+
+    private static final class FailingDaemon extends ApollonCassandraDaemon {
+        private static final IllegalStateException FAILURE = new IllegalStateException("Cannot apply the configuration");
+
+        @Override
+        public void applyConfig() {
+            throw FAILURE;
+        }
+    }
+}
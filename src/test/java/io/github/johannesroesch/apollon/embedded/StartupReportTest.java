@@ -0,0 +1,64 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class StartupReportTest {
+
+    @Test
+    public void testPhasesInExecutionOrder() {
+        final StartupReport report = new StartupReport();
+        report.time(StartupReport.VALIDATE_DATA_FOLDERS, () -> {
+        });
+        report.time(StartupReport.LOAD_SCHEMA, () -> {
+        });
+        report.complete();
+
+        assertEquals(Arrays.asList(StartupReport.VALIDATE_DATA_FOLDERS, StartupReport.LOAD_SCHEMA),
+                new ArrayList<>(report.getPhases().keySet()));
+        assertTrue(report.toLogLine().startsWith("total="));
+        assertTrue(report.toLogLine().contains(" loadSchema="));
+    }
+
+    @Test
+    public void testPhaseDurationsAccumulate() throws InterruptedException {
+        final StartupReport report = new StartupReport();
+        report.record(StartupReport.SCRUB_DATA_DIRECTORIES, System.nanoTime());
+        final long start = System.nanoTime();
+        Thread.sleep(5);
+        report.record(StartupReport.SCRUB_DATA_DIRECTORIES, start);
+
+        assertEquals(1, report.getPhases().size());
+        assertTrue(report.getPhaseMillis(StartupReport.SCRUB_DATA_DIRECTORIES) >= 5);
+        assertEquals(0, report.getPhaseMillis(StartupReport.INIT_SERVER));
+    }
+
+    @Test
+    public void testPhaseRecordedWhenActionFails() {
+        final StartupReport report = new StartupReport();
+        assertThrows(IllegalStateException.class, () -> report.time(StartupReport.INIT_SERVER, () -> {
+            throw new IllegalStateException();
+        }));
+        assertTrue(report.getPhases().containsKey(StartupReport.INIT_SERVER));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ *    Copyright 2021 Johannes Roesch
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package io.github.johannesroesch.apollon.embedded;
+
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static io.github.johannesroesch.apollon.embedded.CassandraEmbeddedConfigParameters.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WorkerIsolationTest {
+
+    @Test
+    public void should_isolate_default_folders_per_worker() {
+        final TypedMap parameters = new TypedMap();
+        parameters.put(WORKER_ID, "3");
+        parameters.put(COMMIT_LOG_FOLDER, "/tmp/commitlog");
+
+        final TypedMap merged = CassandraEmbeddedConfigParameters.mergeWithDefaultParameters(parameters);
+
+        assertEquals("target/cassandra_embedded/worker-3/data", merged.getTyped(DATA_FILE_FOLDER));
+        assertEquals("target/cassandra_embedded/worker-3/cdc_raw", merged.getTyped(CDC_RAW_FOLDER));
+        assertEquals("/tmp/commitlog", merged.getTyped(COMMIT_LOG_FOLDER));
+        assertTrue(CassandraEmbeddedConfigParameters.isDefaultFolder(merged.getTyped(DATA_FILE_FOLDER)));
+    }
+
+    @Test
+    public void should_map_worker_folder_to_shared_folder() {
+        assertEquals(DEFAULT_ACHILLES_TEST_HINTS_FOLDER,
+                WorkerIsolation.sharedFolder(WorkerIsolation.workerFolder(DEFAULT_ACHILLES_TEST_HINTS_FOLDER, "gradle worker/7")));
+        assertEquals("/var/data", WorkerIsolation.workerFolder("/var/data", "1"));
+    }
+
+    @Test
+    public void should_spread_workers_over_the_port_range() {
+        assertEquals(PortFinder.RESERVED_PORTS_START, WorkerIsolation.firstPortToReserve(null, 5));
+        assertNotEquals(WorkerIsolation.firstPortToReserve("1", 5), WorkerIsolation.firstPortToReserve("2", 5));
+    }
+
+    @Test
+    public void should_fall_back_to_the_process_id_in_a_surefire_fork() {
+        final Properties properties = (Properties) System.getProperties().clone();
+        try {
+            WorkerIsolation.WORKER_ID_PROPERTIES.forEach(System::clearProperty);
+            WorkerIsolation.SUREFIRE_FORK_PROPERTIES.forEach(System::clearProperty);
+            System.setProperty("surefire.forkNumber", "2");
+            assertNull(WorkerIsolation.detectWorkerId());
+
+            System.setProperty("surefire.test.class.path", "target/test-classes");
+            assertEquals("pid-" + WorkerIsolation.processId(), WorkerIsolation.detectWorkerId());
+
+            System.setProperty(WorkerIsolation.WORKER_ID_PROPERTY, "2");
+            assertEquals("2", WorkerIsolation.detectWorkerId());
+        } finally {
+            System.setProperties(properties);
+        }
+    }
+}